@@ -1,11 +1,9 @@
 package com.phoebushighschool.phoebusrobotics.ultimateascent;
 
-import com.sun.squawk.util.MathUtils;
 import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.Servo;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.camera.*;
-import edu.wpi.first.wpilibj.image.*;
-import java.util.Vector;
 
 /*
  */
@@ -39,159 +37,309 @@ public class AimingSystem implements PIDSource
     final int X_EDGE_LIMIT = 40;
     final int Y_EDGE_LIMIT = 60;
     final double IMAGE_WIDTH = 640.0;
+    final double IMAGE_HEIGHT = 480.0;
     final double TARGET_WIDTH = 62.0;
+    // How far behind the front of the robot the camera sits, in inches
+    final double CAMERA_SETBACK = 10.0;
+    final int RED_LOW = 25;
+    final int RED_HIGH = 75;
+    final int GREEN_LOW = 185;
+    final int GREEN_HIGH = 255;
+    final int BLUE_LOW = 145;
+    final int BLUE_HIGH = 225;
+    final int HUE_LOW = 115;
+    final int HUE_HIGH = 125;
+    final int SATURATION_LOW = 195;
+    final int SATURATION_HIGH = 255;
+    final int VALUE_LOW = 220;
+    final int VALUE_HIGH = 255;
+    final int MIN_PARTICLE_AREA = 500;
+    final int MAX_PARTICLE_AREA = 65535;
     final double climbPosition = 50.0;
     final double shootPosition = 100.0;
-    int imageState = 0;
     AxisCamera camera;
     Ultrasonic ultrasonicSensor;
     Servo servo;
-    CriteriaCollection cc;
-    ColorImage image;
-    BinaryImage thresholdImage;
-    BinaryImage convexHullImage;
-    BinaryImage filteredImage;
-    ParticleAnalysisReport[] reports = null;
-    ParticleAnalysisReport t = null;
-    AimingSystem.Target target = new Target();
+    GyroSensor gyro = null;
+    CameraCalibration calibration = new CameraCalibration((int) IMAGE_WIDTH,
+            Parameters.CAMERA_FOCAL_LENGTH, Parameters.CAMERA_CENTER_X,
+            Parameters.CAMERA_K1, Parameters.CAMERA_K2);
+    VisionEngine engine;
+    float[] columnAverages = new float[(int) IMAGE_WIDTH];
+    float[] rowAverages = new float[(int) IMAGE_HEIGHT];
+    TargetSlot targetSlot = new TargetSlot();
+    // update()'s own copy of the newest result
+    TargetResult solutionTarget = new TargetResult();
+    ScoringStatistics scoringStatistics = new ScoringStatistics();
+    LoopProfiler profiler = LoopProfiler.getInstance();
+    int frameSegment = profiler.addSegment("Vision frame", 0.0);
+    int scoringSegment = profiler.addSegment("Vision scoring", 0.0);
+    // Targets accepted from the current frame, one entry per array index
+    int targetCount = 0;
+    double[] targetAspectRatio = new double[Parameters.VISION_MAX_PARTICLES];
+    boolean[] targetMiddle = new boolean[Parameters.VISION_MAX_PARTICLES];
+    double[] targetCenterX = new double[Parameters.VISION_MAX_PARTICLES];
+    double[] targetWidth = new double[Parameters.VISION_MAX_PARTICLES];
+    int[] targetLeft = new int[Parameters.VISION_MAX_PARTICLES];
+    int[] targetTop = new int[Parameters.VISION_MAX_PARTICLES];
+    int[] targetHeight = new int[Parameters.VISION_MAX_PARTICLES];
+    TargetTracker targetTracker = new TargetTracker(Parameters.VISION_MAX_PARTICLES);
+    TargetFilter targetFilter = new TargetFilter();
+    // The aim solution worked out by update()
+    int solutionSequence = 0;
+    boolean solutionFound = false;
+    double solutionTimestamp = 0.0;
+    double solutionCaptureDegrees = 0.0;
+    double solutionCaptureHeading = 0.0;
+    double solutionDegrees = 0.0;
+    double solutionCameraDistance = 0.0;
+    double solutionUltrasonicDistance = 0.0;
+    double solutionDistance = 0.0;
+    double solutionDistanceConfidence = 0.0;
+    DistanceFusion distanceFusion = new DistanceFusion();
+    // The raw ultrasonic readings not yet added to the fusion
+    int ultrasonicSamplesTaken = 0;
+    double[] ultrasonicReadings = new double[Parameters.ULTRASONIC_SAMPLES];
+    double[] ultrasonicTimes = new double[Parameters.ULTRASONIC_SAMPLES];
+    RegionTracker regionTracker = new RegionTracker((int) IMAGE_WIDTH, (int) IMAGE_HEIGHT);
+    int frameSequence = 0;
+    Thread visionThread = null;
+    volatile boolean visionRunning = false;
     private boolean busy = false;
 
     public AimingSystem()
     {
-        camera = AxisCamera.getInstance(Parameters.cameraIP);
-        camera.writeResolution(AxisCamera.ResolutionT.k640x480);
-        camera.writeExposurePriority(AxisCamera.ExposurePriorityT.imageQuality);
-        camera.writeExposureControl(AxisCamera.ExposureT.hold);
-        camera.writeWhiteBalance(AxisCamera.WhiteBalanceT.fixedIndoor);
-        cc = new CriteriaCollection();
-        cc.addCriteria(NIVision.MeasurementType.IMAQ_MT_AREA, 500, 65535, false);
+        setVisionEngine(createVisionEngine());
         ultrasonicSensor = new Ultrasonic(Parameters.UltrasonicAnalogChannel);
+        SensorBus.getInstance().setUltrasonic(ultrasonicSensor);
         servo = new Servo(Parameters.cameraServoPWMChannel);
         setShootPosition();
     }
 
-    public class Scores
+    /**
+     * createVisionEngine()
+     *
+     * This method builds the engine Parameters.VISION_ENGINE selects. The
+     * Axis camera is only set up for the NIVision engine; the Java engine
+     * reads its frames from Parameters.VISION_FRAME_URL instead.
+     *
+     * @return VisionEngine - the engine to find targets with
+     */
+    VisionEngine createVisionEngine()
     {
-
-        double rectangularity;
-        double aspectRatioHigh;
-        double aspectRatioMiddle;
-        double xEdge;
-        double yEdge;
-
-        public Scores()
+        if (Parameters.VISION_ENGINE == Parameters.VISION_ENGINE_JAVA)
         {
-            rectangularity = 0.0;
-            aspectRatioHigh = 0.0;
-            aspectRatioMiddle = 0.0;
-            xEdge = 0.0;
-            yEdge = 0.0;
+            FrameSource source = new StreamFrameSource(Parameters.VISION_FRAME_URL,
+                    (int) IMAGE_WIDTH, (int) IMAGE_HEIGHT);
+            JavaVisionEngine javaEngine = new JavaVisionEngine(source,
+                    Parameters.VISION_MAX_PARTICLES, Parameters.VISION_THREADS);
+            javaEngine.setStageTimer(profiler);
+            return javaEngine;
         }
+        camera = AxisCamera.getInstance(Parameters.cameraIP);
+        camera.writeResolution(AxisCamera.ResolutionT.k640x480);
+        camera.writeExposurePriority(AxisCamera.ExposurePriorityT.imageQuality);
+        camera.writeExposureControl(AxisCamera.ExposureT.hold);
+        camera.writeWhiteBalance(AxisCamera.WhiteBalanceT.fixedIndoor);
+        return new NIVisionEngine(camera);
     }
 
-    public class Target
+    /**
+     * setVisionEngine()
+     *
+     * This method replaces the engine that turns camera frames into
+     * particles, and gives it the color threshold and particle filter the
+     * targets are found with. The old engine is freed, stopping any threads
+     * it runs, and the vision thread is stopped while the engines are
+     * swapped.
+     *
+     * @param visionEngine the engine to use from the next frame on
+     */
+    public synchronized void setVisionEngine(VisionEngine visionEngine)
     {
-
-        double aspectRatio;
-        boolean middle;
-        double center_mass_x;
-        double target_width;
-
-        public Target()
+        boolean wasRunning = visionThread != null;
+        stopVision();
+        if (engine != null)
+        {
+            engine.free();
+        }
+        engine = visionEngine;
+        if (Parameters.VISION_HSV_THRESHOLD)
+        {
+            engine.setThresholdHSV(HUE_LOW, HUE_HIGH, SATURATION_LOW, SATURATION_HIGH, VALUE_LOW, VALUE_HIGH);
+        } else
+        {
+            engine.setThresholdRGB(RED_LOW, RED_HIGH, GREEN_LOW, GREEN_HIGH, BLUE_LOW, BLUE_HIGH);  // green values
+        }
+        engine.setParticleAreaRange(MIN_PARTICLE_AREA, MAX_PARTICLE_AREA);
+        engine.setPyramidFactor(Parameters.VISION_PYRAMID_FACTOR);
+        if (wasRunning)
         {
-            aspectRatio = 0.0;
-            middle = true;
-            center_mass_x = 0.0;
-            target_width = 0.0;
+            startVision();
         }
     }
 
+    /**
+     * setGyro()
+     *
+     * This method gives the aiming system the gyro, so the angle to the
+     * target can be corrected for how far the robot has turned since the
+     * frame was captured.
+     *
+     * @param gyroSensor the robot's gyro, or null to stop correcting
+     */
+    public void setGyro(GyroSensor gyroSensor)
+    {
+        gyro = gyroSensor;
+    }
+
     /**
      * This method will find the target we are aiming at, and it's center of
      * mass in the x axis.
      */
     public void processImage()
     {
-        try
+        long start = LoopProfiler.start();
+        boolean processed = engine.processFrame();
+        profiler.end(frameSegment, start);
+        if (processed)
         {
-//            if (reports == null)
-//            {
-//                image = camera.getImage();
-//                thresholdImage = image.thresholdRGB(25, 75, 185, 255, 145, 255);  // green values
-////              thresholdImage = image.thresholdHSV(115, 125, 195, 255, 220, 255);
-//                convexHullImage = thresholdImage.convexHull(true);
-//                filteredImage = convexHullImage.particleFilter(cc);
-//                reports = filteredImage.getOrderedParticleAnalysisReports();
-////                scoreParticles();
-//            } else if (reports != null)
-//            {
-            switch (imageState)
-            {
-                case 0:
-                    image = camera.getImage();
-                    imageState++;
-                    break;
-                case 1:
-                    thresholdImage = image.thresholdRGB(25, 75, 185, 255, 145, 225);  // green values
-//                      thresholdImage = image.thresholdHSV(115, 125, 195, 255, 220, 255);
-                    imageState++;
-                    break;
-                case 2:
-                    convexHullImage = thresholdImage.convexHull(true);
-                    imageState++;
-                    break;
-                case 3:
-                    filteredImage = convexHullImage.particleFilter(cc);
-                    imageState++;
-                    break;
-                case 4:
-                    reports = filteredImage.getOrderedParticleAnalysisReports();
-                    scoreParticles(reports);
-                    imageState = 0;
-                    break;
-            }
-//            }
-
-//            for (int i = 0; i < reports.length; i++)
-//            {
-//                if (r == null)
-//                {
-//                    r = reports[i];
-//                } else if (r.particleArea < reports[i].particleArea)
-//                {
-//                    r = reports[i];
-//                }
-//            }
-
-            if (imageState == 0)
-            {
-                image.free();
-                thresholdImage.free();
-                convexHullImage.free();
-                filteredImage.free();
-            }
-        } catch (NIVisionException e)
+            start = LoopProfiler.start();
+            scoreParticles(engine);
+            profiler.end(scoringSegment, start);
+            engine.releaseFrame();
+            updateRegionOfInterest();
+        }
+    }
+
+    /**
+     * updateRegionOfInterest()
+     *
+     * This method narrows the next frame down to a window around the target
+     * while it is locked, and goes back to the whole frame once it is lost.
+     */
+    void updateRegionOfInterest()
+    {
+        if (!Parameters.VISION_ROI_TRACKING)
+        {
+            return;
+        }
+        regionTracker.update(targetSlot.get());
+        if (regionTracker.isTracking())
         {
-        } catch (AxisCameraException e)
+            engine.setRegionOfInterest(regionTracker.getLeft(), regionTracker.getTop(),
+                    regionTracker.getWidth(), regionTracker.getHeight());
+        } else
         {
+            engine.clearRegionOfInterest();
         }
     }
 
-    public void DisableAimingSystem()
+    /**
+     * startVision()
+     *
+     * This method starts a thread that runs processImage() back to back, so
+     * a new target is published as soon as each camera frame is done instead
+     * of one pipeline stage per control loop iteration. processImage() must
+     * not be called by anything else while the thread is running.
+     */
+    public synchronized void startVision()
+    {
+        if (visionThread != null)
+        {
+            return;
+        }
+        visionRunning = true;
+        visionThread = new Thread(new VisionWorker());
+        // Keep the control loop ahead of the vision thread when both are ready
+        visionThread.setPriority(Thread.NORM_PRIORITY - 1);
+        visionThread.start();
+    }
+
+    /**
+     * stopVision()
+     *
+     * This method stops the vision thread and waits for it to finish the
+     * pipeline stage it is in.
+     */
+    public synchronized void stopVision()
     {
+        if (visionThread == null)
+        {
+            return;
+        }
+        visionRunning = false;
         try
         {
-            image.free();
-            thresholdImage.free();
-            convexHullImage.free();
-            filteredImage.free();
-        } catch (NIVisionException e)
+            visionThread.join();
+        } catch (InterruptedException e)
         {
         }
-        imageState = 0;
+        visionThread = null;
+    }
+
+    /**
+     * VisionWorker
+     *
+     * This class is the body of the vision thread.
+     */
+    class VisionWorker implements Runnable
+    {
+
+        public void run()
+        {
+            while (visionRunning)
+            {
+                if (!engine.isFrameAvailable())
+                {
+                    try
+                    {
+                        Thread.sleep(Parameters.VISION_IDLE_DELAY_MS);
+                    } catch (InterruptedException e)
+                    {
+                    }
+                    continue;
+                }
+                processImage();
+                Thread.yield();
+            }
+        }
+    }
+
+    public void DisableAimingSystem()
+    {
+        stopVision();
+        engine.releaseFrame();
+        regionTracker.reset();
+        targetTracker.reset();
+        targetFilter.reset();
+        engine.clearRegionOfInterest();
         busy = false;
     }
 
+    /**
+     * getTargetResult()
+     *
+     * @param copy the caller's own result to copy the newest scored frame
+     * into
+     * @return true - copy holds the newest scored frame
+     *         false - none has been scored yet
+     */
+    public boolean getTargetResult(TargetResult copy)
+    {
+        return targetSlot.copyInto(copy);
+    }
+
+    /**
+     * getScoringStatistics()
+     *
+     * @return the counts of particles thrown out at each scoring stage
+     */
+    public ScoringStatistics getScoringStatistics()
+    {
+        return scoringStatistics;
+    }
+
     /**
      * scoreParticles()
      *
@@ -203,43 +351,108 @@ public class AimingSystem implements PIDSource
      * have characteristics of targets the particles are compared based on
      * aspect ratio, and the target with the best aspect ratio is selected.
      *
-     * @throws NIVisionException
+     * The scores are worked out from cheapest to most expensive, and a
+     * particle is dropped at the first score that is under its limit, so
+     * clutter never gets as far as the measurements and the edge averages.
+     * Only the largest Parameters.VISION_MAX_PARTICLES particles are scored,
+     * and the accepted ones are kept in arrays that are reused every frame.
+     * Particles that match a confirmed TargetTracker track skip the edge
+     * scores, and the target published is the one the locked track matched.
+     *
+     * @param engine the vision engine holding the particles of the frame
      */
-    public void scoreParticles(ParticleAnalysisReport[] report) throws NIVisionException
+    public void scoreParticles(VisionEngine engine)
     {
-        boolean middle = Parameters.GO_FOR_MIDDLE_TARGET;
-        Vector highTargets = new Vector();
-        Vector middleTargets = new Vector();
+        int count = Math.min(engine.getParticleCount(), Parameters.VISION_MAX_PARTICLES);
 
-        for (int i = 0; i < report.length; i++)
+        double timestamp = engine.getFrameTimestamp();
+
+        targetCount = 0;
+        targetTracker.predict(timestamp);
+        scoringStatistics.frameScored(count);
+        for (int i = 0; i < count; i++)
         {
-            Scores score = new Scores();
-            score.rectangularity = scoreRectangularity(report[i]);
-            score.aspectRatioHigh = scoreAspectRatio(filteredImage, report[i], i, false);
-            score.aspectRatioMiddle = scoreAspectRatio(filteredImage, report[i], i, true);
-            score.xEdge = scoreXEdge(thresholdImage, report[i]);
-            score.yEdge = scoreYEdge(thresholdImage, report[i]);
+            ParticleReport report = engine.getParticle(i);
+            if (scoreRectangularity(report) <= RECTANGULARITY_LIMIT)
+            {
+                scoringStatistics.reject(ScoringStatistics.RECTANGULARITY);
+                continue;
+            }
+
+            double rectLong = engine.getEquivalentRectLongSide(i);
+            double rectShort = engine.getEquivalentRectShortSide(i);
+            double aspectRatioHigh = scoreAspectRatio(report, rectLong, rectShort, false);
+            double aspectRatioMiddle = scoreAspectRatio(report, rectLong, rectShort, true);
+            boolean high = aspectRatioHigh > ASPECT_RATIO_LIMIT;
+            if (!high && aspectRatioMiddle <= ASPECT_RATIO_LIMIT)
+            {
+                scoringStatistics.reject(ScoringStatistics.ASPECT_RATIO);
+                continue;
+            }
 
-            if (scoreCompare(score, false))
+            if (targetTracker.isConfirmed(report.center_mass_x, report.boundingRectTop,
+                    report.boundingRectWidth, report.boundingRectHeight))
             {
-                Target t = new Target();
-                t.aspectRatio = score.aspectRatioHigh;
-                t.center_mass_x = report[i].center_mass_x;
-                t.target_width = report[i].boundingRectWidth;
-                t.middle = false;
-                highTargets.addElement(t);
-            } else if (scoreCompare(score, true))
+                scoringStatistics.track();
+            } else
             {
-                Target t = new Target();
-                t.aspectRatio = score.aspectRatioMiddle;
-                t.center_mass_x = report[i].center_mass_x;
-                t.target_width = report[i].boundingRectWidth;
-                t.middle = true;
-                middleTargets.addElement(t);
+                if (scoreXEdge(engine, i) <= X_EDGE_LIMIT)
+                {
+                    scoringStatistics.reject(ScoringStatistics.X_EDGE);
+                    continue;
+                }
+                if (scoreYEdge(engine, i) <= Y_EDGE_LIMIT)
+                {
+                    scoringStatistics.reject(ScoringStatistics.Y_EDGE);
+                    continue;
+                }
             }
+            scoringStatistics.accept();
+
+            targetAspectRatio[targetCount] = high ? aspectRatioHigh : aspectRatioMiddle;
+            targetMiddle[targetCount] = !high;
+            targetCenterX[targetCount] = report.center_mass_x;
+            targetWidth[targetCount] = report.boundingRectWidth;
+            targetLeft[targetCount] = report.boundingRectLeft;
+            targetTop[targetCount] = report.boundingRectTop;
+            targetHeight[targetCount] = report.boundingRectHeight;
+            targetCount++;
         }
 
-        target = TargetCompare(highTargets, middleTargets, middle);
+        boolean middle = Parameters.GO_FOR_MIDDLE_TARGET;
+        targetTracker.update(targetCount, targetCenterX, targetTop, targetWidth, targetHeight, targetMiddle);
+        int t = targetTracker.lock(TargetCompare(middle), middle);
+        frameSequence++;
+        if (t < 0)
+        {
+            TargetResult result = targetSlot.next();
+            result.setMissed(frameSequence, timestamp);
+            targetSlot.publish(result);
+            targetFilter.miss();
+        } else
+        {
+            TargetResult result = targetSlot.next();
+            result.setFound(frameSequence, timestamp,
+                    targetAspectRatio[t], targetMiddle[t], targetCenterX[t], targetWidth[t],
+                    targetLeft[t], targetTop[t], targetHeight[t], targetTracker.getLockedId());
+            targetSlot.publish(result);
+            updateTargetFilter(result);
+        }
+    }
+
+    /**
+     * updateTargetFilter()
+     *
+     * This method adds the target found in a frame to the filtered estimate.
+     */
+    void updateTargetFilter(TargetResult result)
+    {
+        double heading = getDegreesToTarget(result);
+        if (gyro != null)
+        {
+            heading += gyro.getAngleAt(result.timestamp);
+        }
+        targetFilter.update(result.timestamp, heading, getDistanceWCamera(result), result.trackId);
     }
 
     /**
@@ -253,7 +466,7 @@ public class AimingSystem implements PIDSource
      * of the bounding rectangle.
      * @return the score of the particle.
      */
-    public double scoreRectangularity(ParticleAnalysisReport r)
+    public double scoreRectangularity(ParticleReport r)
     {
         if ((r.boundingRectHeight * r.boundingRectWidth) != 0.0)
         {
@@ -272,22 +485,38 @@ public class AimingSystem implements PIDSource
      * middle target. A score of 100 means that the target has an aspect ratio
      * identical to either the middle or high target.
      *
-     * @param image the image from which the particle originates.
+     * @param engine the vision engine the particle was found by.
+     * @param report the analysis of the particle
+     * @param middle true if aspect ratio to be compared to is the middle
+     * target, false if it is the high target.
+     * @return the score of the particle, from 0 - 100
+     */
+    public double scoreAspectRatio(VisionEngine engine, ParticleReport report,
+            int particleNumber, boolean middle)
+    {
+        return scoreAspectRatio(report, engine.getEquivalentRectLongSide(particleNumber),
+                engine.getEquivalentRectShortSide(particleNumber), middle);
+    }
+
+    /**
+     * scoreAspectRatio()
+     *
+     * This method scores the particle the same way as above from equivalent
+     * rectangle sides that were already measured, so the high and middle
+     * scores can share one measurement.
+     *
      * @param report the analysis of the particle
+     * @param rectLong the long side of the particle's equivalent rectangle
+     * @param rectShort the short side of the particle's equivalent rectangle
      * @param middle true if aspect ratio to be compared to is the middle
      * target, false if it is the high target.
      * @return the score of the particle, from 0 - 100
-     * @throws NIVisionException
      */
-    public double scoreAspectRatio(BinaryImage image, ParticleAnalysisReport report,
-            int particleNumber, boolean middle) throws NIVisionException
+    public double scoreAspectRatio(ParticleReport report, double rectLong,
+            double rectShort, boolean middle)
     {
-        double rectLong, rectShort, aspectRatio, idealAspectRatio;
+        double aspectRatio, idealAspectRatio;
 
-        rectLong = NIVision.MeasureParticle(image.image, particleNumber, false,
-                NIVision.MeasurementType.IMAQ_MT_EQUIVALENT_RECT_LONG_SIDE);
-        rectShort = NIVision.MeasureParticle(image.image, particleNumber, false,
-                NIVision.MeasurementType.IMAQ_MT_EQUIVALENT_RECT_SHORT_SIDE);
         if (middle)
         {
             idealAspectRatio = 62 / 29;
@@ -313,29 +542,29 @@ public class AimingSystem implements PIDSource
      * This method scores the particle from 0 - 100 based on how solid the
      * vertical edges are and how hollow the center of the particle are.
      *
-     * @param image the image from which the particle originated, needs to be
-     * pre-convex hull
-     * @param report the analysis of the particle
+     * @param engine the vision engine the particle was found by, its column
+     * averages come from the pre-convex hull image
+     * @param particleNumber the particle to score
      * @return the score of the particle from 0 - 100
-     * @throws NIVisionException
      */
-    public double scoreXEdge(BinaryImage image, ParticleAnalysisReport report) throws NIVisionException
+    public double scoreXEdge(VisionEngine engine, int particleNumber)
     {
         double total = 0;
-        LinearAverages averages;
 
-        NIVision.Rect rect = new NIVision.Rect(report.boundingRectTop, report.boundingRectLeft, report.boundingRectHeight, report.boundingRectWidth);
-        averages = NIVision.getLinearAverages(image.image, LinearAverages.LinearAveragesMode.IMAQ_COLUMN_AVERAGES, rect);
-        float columnAverages[] = averages.getColumnAverages();
-        for (int i = 0; i < (columnAverages.length); i++)
+        int length = engine.getColumnAverages(particleNumber, columnAverages);
+        if (length == 0)
+        {
+            return 0.0;
+        }
+        for (int i = 0; i < length; i++)
         {
-            if (xMin[(i * (XMINSIZE - 1) / columnAverages.length)] < columnAverages[i]
-                    && columnAverages[i] < xMax[i * (XMAXSIZE - 1) / columnAverages.length])
+            if (xMin[(i * (XMINSIZE - 1) / length)] < columnAverages[i]
+                    && columnAverages[i] < xMax[i * (XMAXSIZE - 1) / length])
             {
                 total++;
             }
         }
-        total = 100 * total / (columnAverages.length);
+        total = 100 * total / length;
         return total;
     }
 
@@ -345,117 +574,58 @@ public class AimingSystem implements PIDSource
      * This method scores the particle from 0 - 100 based on how solid the
      * horizontal edges are and how hollow the center of the particle are.
      *
-     * @param image the image from which the particle originated, needs to be
-     * pre-convex hull
-     * @param report the analysis of the particle
+     * @param engine the vision engine the particle was found by, its row
+     * averages come from the pre-convex hull image
+     * @param particleNumber the particle to score
      * @return the score of the particle from 0 -100
-     * @throws NIVisionException
      */
-    public double scoreYEdge(BinaryImage image, ParticleAnalysisReport report) throws NIVisionException
+    public double scoreYEdge(VisionEngine engine, int particleNumber)
     {
         double total = 0;
-        LinearAverages averages;
 
-        NIVision.Rect rect = new NIVision.Rect(report.boundingRectTop, report.boundingRectLeft, report.boundingRectHeight, report.boundingRectWidth);
-        averages = NIVision.getLinearAverages(image.image, LinearAverages.LinearAveragesMode.IMAQ_ROW_AVERAGES, rect);
-        float rowAverages[] = averages.getRowAverages();
-        for (int i = 0; i < (rowAverages.length); i++)
+        int length = engine.getRowAverages(particleNumber, rowAverages);
+        if (length == 0)
+        {
+            return 0.0;
+        }
+        for (int i = 0; i < length; i++)
         {
-            if (yMin[(i * (YMINSIZE - 1) / rowAverages.length)] < rowAverages[i]
-                    && rowAverages[i] < yMax[i * (YMAXSIZE - 1) / rowAverages.length])
+            if (yMin[(i * (YMINSIZE - 1) / length)] < rowAverages[i]
+                    && rowAverages[i] < yMax[i * (YMAXSIZE - 1) / length])
             {
                 total++;
             }
         }
-        total = 100 * total / (rowAverages.length);
+        total = 100 * total / length;
         return total;
     }
 
-    /**
-     * scoreCompare()
-     *
-     * This method determines if a particle is a target based on if the
-     * particles score compared to an given value.
-     *
-     * @param scores the score of the particle to be compared to
-     * @param middle true if the score to be compared to is the middle target,
-     * false if it is the high target
-     * @return returns true if it qualifies as a target
-     */
-    boolean scoreCompare(AimingSystem.Scores scores, boolean middle)
-    {
-        boolean isTarget = true;
-
-        isTarget &= scores.rectangularity > RECTANGULARITY_LIMIT;
-        if (middle)
-        {
-            isTarget &= scores.aspectRatioMiddle > ASPECT_RATIO_LIMIT;
-        } else
-        {
-            isTarget &= scores.aspectRatioHigh > ASPECT_RATIO_LIMIT;
-        }
-        isTarget &= scores.xEdge > X_EDGE_LIMIT;
-        isTarget &= scores.yEdge > Y_EDGE_LIMIT;
-
-        return isTarget;
-    }
-
     /**
      * TargetCompare()
      *
-     * This method identifies which target of all the targets scoreCompare()
+     * This method identifies which target of all the targets scoreParticles()
      * identified is actually the target we are shooting at. if the aspect ratio
      * score of the current particle is larger than the former particle the
      * current particle is substituted for the former. *note: even thought there
      * are two middle targets, based on how the particles are analyzed the
      * target on our current side of the pyramid will be the better target.
+     * This is only the choice for a new lock, the TargetTracker keeps the
+     * locked target until it is lost.
      *
-     * @param highT the list of all targets determined to be high targets
-     * @param middleT the list of all targets determined to be middle targets
      * @param middle true if the target that we are shooting at is the middle
      * target, false if the target we are shooting at is the high target.
-     * @return the target we are shooting at.
+     * @return the index of the target we are shooting at, or -1 if there is
+     * none.
      */
-    AimingSystem.Target TargetCompare(Vector highT, Vector middleT, boolean middle)
+    int TargetCompare(boolean middle)
     {
-        AimingSystem.Target t = null;
-        if (middle)
+        int t = -1;
+        for (int i = 0; i < targetCount; i++)
         {
-            for (int i = 0; i < middleT.size(); i++)
+            if (targetMiddle[i] == middle
+                    && (t < 0 || targetAspectRatio[t] < targetAspectRatio[i]))
             {
-                t = new Target();
-                Target temp = (Target) middleT.elementAt(i);
-                if (i == 0)
-                {
-                    t.aspectRatio = temp.aspectRatio;
-                    t.center_mass_x = temp.center_mass_x;
-                    t.target_width = temp.target_width;
-                    t.middle = true;
-                } else if (t.aspectRatio < temp.aspectRatio)
-                {
-                    t.aspectRatio = temp.aspectRatio;
-                    t.center_mass_x = temp.center_mass_x;
-                    t.target_width = temp.target_width;
-                }
-            }
-        } else
-        {
-            for (int i = 0; i < highT.size(); i++)
-            {
-                t = new Target();
-                Target temp = (Target) highT.elementAt(i);
-                if (i == 0)
-                {
-                    t.aspectRatio = temp.aspectRatio;
-                    t.center_mass_x = temp.center_mass_x;
-                    t.target_width = temp.target_width;
-                    t.middle = false;
-                } else if (t.aspectRatio < temp.aspectRatio)
-                {
-                    t.aspectRatio = temp.aspectRatio;
-                    t.center_mass_x = temp.center_mass_x;
-                    t.target_width = temp.target_width;
-                }
+                t = i;
             }
         }
         return t;
@@ -479,12 +649,21 @@ public class AimingSystem implements PIDSource
         return false;
     }
 
+    /**
+     * pidGet()
+     *
+     * This method gives aimController the filtered angle to the target, so
+     * it gets a new value on every tick and keeps getting one through short
+     * gaps in the frames.
+     *
+     * @return the filtered angle to the target, 0.0 if there is none
+     */
     public double pidGet()
     {
         double temp;
         try
         {
-            temp = getDegreesToTarget();
+            temp = getFilteredDegreesToTarget();
         } catch (NoTargetFoundException e)
         {
             return 0.0;
@@ -492,34 +671,186 @@ public class AimingSystem implements PIDSource
         return temp;
     }
 
+    /**
+     * getFilteredDegreesToTarget()
+     *
+     * This method returns the angle to the target from the TargetFilter
+     * estimate for right now, measured from where the robot points now.
+     *
+     * @return the angle to the target, negative th robot needs to turn left,
+     * positive, right
+     */
+    public double getFilteredDegreesToTarget() throws NoTargetFoundException
+    {
+        double now = Timer.getFPGATimestamp();
+        if (!targetFilter.hasTarget(now))
+        {
+            throw new NoTargetFoundException("No target found.");
+        }
+        double offset = targetFilter.getHeading(now);
+        if (gyro != null)
+        {
+            offset -= gyro.getAngle();
+        }
+        return offset;
+    }
+
+    /**
+     * getFilteredDistanceToTarget()
+     *
+     * @return the distance to the target from the TargetFilter estimate for
+     * right now, in inches
+     */
+    public double getFilteredDistanceToTarget() throws NoTargetFoundException
+    {
+        double now = Timer.getFPGATimestamp();
+        if (!targetFilter.hasTarget(now))
+        {
+            throw new NoTargetFoundException("No target found.");
+        }
+        return targetFilter.getDistance(now);
+    }
+
+    /**
+     * getTargetConfidence()
+     *
+     * @return from 0 - 1, how much the filtered estimate can be trusted
+     * right now
+     */
+    public double getTargetConfidence()
+    {
+        return targetFilter.getConfidence(Timer.getFPGATimestamp());
+    }
+
+    /**
+     * update()
+     *
+     * This method works out the aim solution once per control loop
+     * iteration: the gyro angle comes from the caller's copy of the
+     * SensorBus snapshot, and the camera bearing and distance are only
+     * worked out when a new frame has been scored.
+     * The DistanceFusion is given each raw ultrasonic reading once, with the
+     * time it was taken, rather than the sensor's median, since medians of
+     * overlapping windows are not independent readings. Together with the
+     * camera distances it gives the distance to the target.
+     * The getters below all read this solution, so they agree with each
+     * other within an iteration and do not repeat the work.
+     *
+     * @param sensors - this run's copy of the sensor snapshot
+     */
+    public synchronized void update(SensorSnapshot sensors)
+    {
+        double now = Timer.getFPGATimestamp();
+        int taken = ultrasonicSensor.readSamples(ultrasonicSamplesTaken,
+                ultrasonicReadings, ultrasonicTimes);
+        int fresh = Math.min(taken - ultrasonicSamplesTaken, ultrasonicReadings.length);
+        for (int i = 0; i < fresh; i++)
+        {
+            distanceFusion.addUltrasonic(ultrasonicTimes[i], ultrasonicReadings[i]);
+        }
+        ultrasonicSamplesTaken = taken;
+        TargetResult target = targetSlot.copyInto(solutionTarget) ? solutionTarget : null;
+        int sequence = target == null ? 0 : target.sequence;
+        if (sequence != solutionSequence)
+        {
+            solutionSequence = sequence;
+            solutionFound = target != null && target.found;
+            if (solutionFound)
+            {
+                solutionTimestamp = target.timestamp;
+                solutionCaptureDegrees = getDegreesToTarget(target);
+                solutionCaptureHeading = gyro == null ? 0.0 : gyro.getAngleAt(target.timestamp);
+            }
+            solutionCameraDistance = getDistanceWCamera(target);
+            if (solutionFound)
+            {
+                distanceFusion.addCamera(target.timestamp, solutionCameraDistance);
+            }
+        }
+        distanceFusion.update(now);
+        solutionUltrasonicDistance = distanceFusion.getUltrasonicDistance();
+        solutionDistance = distanceFusion.getDistance();
+        solutionDistanceConfidence = distanceFusion.getConfidence();
+        solutionDegrees = solutionCaptureDegrees;
+        if (gyro != null)
+        {
+            solutionDegrees -= sensors.getGyroAngle() - solutionCaptureHeading;
+        }
+    }
+
     /**
      * getDegreesToTarget()
      *
-     * This method returns the angle to the target.
+     * This method returns the angle to the target. The angle is measured in
+     * the newest frame and, if there is a gyro, corrected for how far the
+     * robot had turned since the frame was captured at the last update().
      *
      * @return the angle to the target, negative th robot needs to turn left,
      * positive, right
      */
-    public double getDegreesToTarget() throws NoTargetFoundException
+    public synchronized double getDegreesToTarget() throws NoTargetFoundException
     {
-        double offset;
-        if (target == null)
+        if (!solutionFound)
         {
             throw new NoTargetFoundException("No target found.");
-        } else
+        }
+        return solutionDegrees;
+    }
+
+    /**
+     * getTargetHeading()
+     *
+     * This method returns the gyro heading that points the robot at the
+     * target: the heading the robot had when the newest frame was captured
+     * plus the angle to the target in that frame. Without a gyro it is the
+     * same as getDegreesToTarget().
+     *
+     * @return a heading in degrees, on the same scale as GyroSensor.getAngle()
+     */
+    public synchronized double getTargetHeading() throws NoTargetFoundException
+    {
+        if (!solutionFound)
+        {
+            throw new NoTargetFoundException("No target found.");
+        }
+        return solutionCaptureHeading + solutionCaptureDegrees;
+    }
+
+    /**
+     * getTargetTimestamp()
+     *
+     * @return the FPGA time in seconds the frame the solution comes from was
+     * captured
+     */
+    public synchronized double getTargetTimestamp() throws NoTargetFoundException
+    {
+        if (!solutionFound)
         {
-            offset = target.center_mass_x - (IMAGE_WIDTH / 2.0);
-            offset = offset * (TARGET_WIDTH / target.target_width);
-            offset = MathUtils.atan(offset / getDistanceToTarget());
-            return offset;
+            throw new NoTargetFoundException("No target found.");
         }
-//        else
-//        {
-//            offset = ((double) r.center_mass_x) - (IMAGE_WIDTH / 2.0);
-//            offset = offset * (24.0 / ((double) r.boundingRectWidth));
-//            offset = MathUtils.atan(offset / getDistanceWCamera());
-//            return Math.toDegrees(offset);
-//        }
+        return solutionTimestamp;
+    }
+
+    /**
+     * getDegreesToTarget()
+     *
+     * This method returns the angle to the target at the time its frame was
+     * captured, looked up from the camera calibration.
+     */
+    double getDegreesToTarget(TargetResult target)
+    {
+        return calibration.getAngle(target.center_mass_x);
+    }
+
+    /**
+     * getCameraCalibration()
+     *
+     * @return the calibration that turns image columns into angles, which
+     * can be given new intrinsics while the robot runs
+     */
+    public CameraCalibration getCameraCalibration()
+    {
+        return calibration;
     }
 
     /**
@@ -540,11 +871,13 @@ public class AimingSystem implements PIDSource
      *
      * This method returns the distance to what the robot is facing.
      *
-     * @return the distance to what the robot is facing in inches
+     * @return the distance to what the robot is facing in inches, averaged
+     * over the recent readings with outliers thrown out, as of the last
+     * update()
      */
-    public double getDistanceWUltrasonic()
+    public synchronized double getDistanceWUltrasonic()
     {
-        return ultrasonicSensor.getAveragedDistance();
+        return solutionUltrasonicDistance;
     }
 
     /**
@@ -552,46 +885,47 @@ public class AimingSystem implements PIDSource
      *
      * This method gets the distance to the target using the camera.
      *
-     * @return the distance to what the camera thinks is the target in inches
+     * @return the distance to what the camera thinks is the target in inches,
+     * as of the last update()
      */
-    public double getDistanceWCamera()
+    public synchronized double getDistanceWCamera()
+    {
+        return solutionCameraDistance;
+    }
+
+    double getDistanceWCamera(TargetResult target)
     {
-        double w = 0.0;
-        if (target != null)
+        double d = 0.0;
+        if (target != null && target.found)
         {
-            w = IMAGE_WIDTH * (TARGET_WIDTH / target.target_width);
-            w = w / 2;
+            d = calibration.getDistance(target.boundingRectLeft,
+                    target.boundingRectLeft + target.target_width, TARGET_WIDTH);
         }
-//        if (t != null)
-//        {
-//            w = IMAGE_WIDTH * (24.0 / r.boundingRectWidth);
-//            w = w / 2;
-//        }
-        return (w / Math.tan(Math.toRadians(24.0))) + 10.0;
+        return d + CAMERA_SETBACK;
     }
 
     /**
      * getDistanceToTarget()
      *
-     * This method returns what we believe to be the distance to the target. If
-     * the camera distance and the ultrasonic distance are outside of +/- 5% of
-     * each other, we choose the larger value. If they are within 5% of each
-     * other we take the average of both and return that.
+     * This method returns what we believe to be the distance to the target,
+     * fused from the camera and ultrasonic distances by the DistanceFusion.
      *
-     * @return the distance to the target.
+     * @return the distance to the target, as of the last update().
      */
-    public double getDistanceToTarget()
+    public synchronized double getDistanceToTarget()
     {
-        double cameraD = getDistanceWCamera();
-        double ultrasonicD = getDistanceWUltrasonic();
-        if ((cameraD / ultrasonicD) > 1.05
-                || (cameraD / ultrasonicD) < 0.95)
-        {
-            return Math.max(cameraD, ultrasonicD);
-        } else
-        {
-            return (cameraD + ultrasonicD) / 2.0;
-        }
+        return solutionDistance;
+    }
+
+    /**
+     * getDistanceConfidence()
+     *
+     * @return from 0 - 1, how much getDistanceToTarget() can be trusted, as
+     * of the last update()
+     */
+    public synchronized double getDistanceConfidence()
+    {
+        return solutionDistanceConfidence;
     }
 
     public double getServoPosition()
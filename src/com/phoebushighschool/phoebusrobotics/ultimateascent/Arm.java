@@ -7,6 +7,9 @@ public class Arm {
 
     protected boolean catchState = false;
     protected CANJaguar motor;
+    // -1 until the Jaguar is on the SensorBus; an arm without limit switches
+    // reads as being at both limits, so it is never driven past them
+    protected int limitSlot = -1;
     public String armState = "Retracted";
 //    protected DigitalInput latchSwitch;
 //    protected DigitalInput handOffSwitch;
@@ -18,6 +21,7 @@ public class Arm {
 //                , Parameters.handOffLimitSwitchGPIOChannel);
         try {
             motor = new CANJaguar(armCANID);
+            limitSlot = SensorBus.getInstance().addLimitSwitches(motor);
             motor.configMaxOutputVoltage(Parameters.MaxMotorOutputVoltage);
             motor.changeControlMode(CANJaguar.ControlMode.kPercentVbus);
             motor.configNeutralMode(CANJaguar.NeutralMode.kBrake);
@@ -50,6 +54,25 @@ public class Arm {
     public void moveByValue(double JoystickValue) throws CANTimeoutException
     {
         motor.setX(JoystickValue);
+        updateArmState();
+    }
+
+    /**
+     * updateArmState()
+     *
+     * This method sets armState from the limit switches, for when the arm
+     * has been moved by hand rather than by extend() or retract(). Between
+     * the limits it keeps the last state.
+     */
+    public void updateArmState() {
+        if (limitSlot < 0) {
+            return;
+        }
+        if (isFullyExtended()) {
+            armState = "Extended";
+        } else if (isFullyRetracted()) {
+            armState = "Retracted";
+        }
     }
 //       too narrow
 //    public boolean isLatched() {
@@ -60,12 +83,27 @@ public class Arm {
 //    }
 
 
-    public boolean isFullyExtended() throws CANTimeoutException {
-        return !motor.getForwardLimitOK();
+    /**
+     * isFullyExtended()
+     *
+     * The limit switches are as of the last 
+     * SensorBus.sampleLimitSwitches(), which ClimbingSystem calls before 
+     * moving an arm or reporting its state.
+     *
+     * @return true - the arm is at its forward limit
+     */
+    public boolean isFullyExtended() {
+        return limitSlot < 0 || !SensorBus.getInstance().getForwardLimitOK(limitSlot);
     }
 
-    public boolean isFullyRetracted() throws CANTimeoutException {
-        return !motor.getReverseLimitOK();
+    /**
+     * isFullyRetracted()
+     *
+     * @return true - the arm is at its reverse limit, as of the last 
+     * SensorBus.sampleLimitSwitches()
+     */
+    public boolean isFullyRetracted() {
+        return limitSlot < 0 || !SensorBus.getInstance().getReverseLimitOK(limitSlot);
     }
 
     public void stop() {
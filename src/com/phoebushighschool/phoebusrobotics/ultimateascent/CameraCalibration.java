@@ -0,0 +1,124 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import com.sun.squawk.util.MathUtils;
+
+/**
+ * CameraCalibration
+ *
+ * This class turns image columns into directions. It is built from the
+ * camera's focal length and optical center in pixels, and two radial lens
+ * distortion coefficients, and works out once for every column the angle
+ * off the camera's axis and the tangent of that angle. After that, finding
+ * a bearing or measuring the distance to a target of known width is just a
+ * table lookup, and both stay accurate toward the edges of the image where
+ * the lens bends things the most.
+ */
+public class CameraCalibration
+{
+
+    final int UNDISTORT_ITERATIONS = 10;
+    int width;
+    double[] angle;
+    double[] tangent;
+
+    /**
+     * CameraCalibration
+     *
+     * @param width the width of the image in pixels
+     * @param focalLength the focal length in pixels
+     * @param centerX the column the camera's axis goes through
+     * @param k1 the second order radial distortion coefficient
+     * @param k2 the fourth order radial distortion coefficient
+     */
+    public CameraCalibration(int width, double focalLength, double centerX,
+            double k1, double k2)
+    {
+        this.width = width;
+        angle = new double[width + 1];
+        tangent = new double[width + 1];
+        setIntrinsics(focalLength, centerX, k1, k2);
+    }
+
+    /**
+     * setIntrinsics()
+     *
+     * This method rebuilds the tables for a new calibration.
+     */
+    public void setIntrinsics(double focalLength, double centerX, double k1, double k2)
+    {
+        for (int u = 0; u <= width; u++)
+        {
+            double distorted = (u - centerX) / focalLength;
+            // Undo the distortion by fixed point iteration along the
+            // horizontal center line
+            double x = distorted;
+            for (int i = 0; i < UNDISTORT_ITERATIONS; i++)
+            {
+                double r2 = x * x;
+                x = distorted / (1.0 + k1 * r2 + k2 * r2 * r2);
+            }
+            tangent[u] = x;
+            angle[u] = Math.toDegrees(MathUtils.atan(x));
+        }
+    }
+
+    /**
+     * getAngle()
+     *
+     * @param column a column of the image, may be between pixels
+     * @return the angle of the column off the camera's axis in degrees,
+     * positive to the right
+     */
+    public double getAngle(double column)
+    {
+        return interpolate(angle, column);
+    }
+
+    /**
+     * getTangent()
+     *
+     * @param column a column of the image, may be between pixels
+     * @return the tangent of the column's angle off the camera's axis
+     */
+    public double getTangent(double column)
+    {
+        return interpolate(tangent, column);
+    }
+
+    /**
+     * getDistance()
+     *
+     * This method measures how far away an object of known width is from
+     * where its edges are in the image, assuming it faces the camera.
+     *
+     * @param left the column of the object's left edge
+     * @param right the column of the object's right edge
+     * @param objectWidth the real width of the object
+     * @return the distance from the camera, in the units of objectWidth, or
+     * 0.0 if the edges are the wrong way around
+     */
+    public double getDistance(double left, double right, double objectWidth)
+    {
+        double spread = getTangent(right) - getTangent(left);
+        if (spread <= 0.0)
+        {
+            return 0.0;
+        }
+        return objectWidth / spread;
+    }
+
+    double interpolate(double[] table, double column)
+    {
+        if (column <= 0.0)
+        {
+            return table[0];
+        }
+        if (column >= width)
+        {
+            return table[width];
+        }
+        int u = (int) column;
+        double fraction = column - u;
+        return table[u] + fraction * (table[u + 1] - table[u]);
+    }
+}
@@ -19,6 +19,7 @@ public class ClimbingSystem {
      * This method will extend the arms far enough to reach the next level
      */
     public boolean extendToLatch() throws CANTimeoutException {
+        SensorBus.getInstance().sampleLimitSwitches();
         if (forwardArm.extend() && backArm.extend()) {
             return true;
         }
@@ -29,9 +30,9 @@ public class ClimbingSystem {
      * This method will retract the arms to within the frame perimeter
      */
     public void retract() throws CANTimeoutException {
-            forwardArm.retract();
-            backArm.retract();
-        
+        SensorBus.getInstance().sampleLimitSwitches();
+        forwardArm.retract();
+        backArm.retract();
     }
     
     /**
@@ -44,6 +45,9 @@ public class ClimbingSystem {
      */
     public void moveForwardArmByJoystick(double forwardJoystickValue) throws CANTimeoutException
     {
+        if (forwardJoystickValue != 0.0) {
+            SensorBus.getInstance().sampleLimitSwitches();
+        }
         forwardArm.moveByValue(forwardJoystickValue);
     }
     /**
@@ -56,6 +60,9 @@ public class ClimbingSystem {
      */
     public void moveBackArmByJoystick(double backJoystickValue) throws CANTimeoutException     
     {
+        if (backJoystickValue != 0.0) {
+            SensorBus.getInstance().sampleLimitSwitches();
+        }
         backArm.moveByValue(backJoystickValue);
     }
     
@@ -63,11 +70,15 @@ public class ClimbingSystem {
      *getArmState()
      * 
      * This method will return the state of the forward arm, extended or retracted.
+     * The limit switches are read first, so the state is current even after
+     * the arm has been moved by joystick.
      * 
      * @return 
      */
     public String getArmState()
     {
+        SensorBus.getInstance().sampleLimitSwitches();
+        forwardArm.updateArmState();
         return forwardArm.armState;
     }
 }
\ No newline at end of file
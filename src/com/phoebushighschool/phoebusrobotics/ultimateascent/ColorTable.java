@@ -0,0 +1,118 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * ColorTable
+ *
+ * This class classifies pixels with one table lookup. The color space is
+ * cut down to 5 bits a channel, 32768 colors, and the table holds one bit
+ * per color saying whether it is in the threshold. The table is worked out
+ * once from RGB or HSV ranges, so an HSV threshold costs the same per pixel
+ * as an RGB one.
+ *
+ * Each table entry covers 8 levels of each channel and is decided by the
+ * color at its center, so the edges of a range can move by up to 4 levels.
+ *
+ * The threshold can be changed while the vision thread is using the table.
+ * Each rebuild fills a new table and then swaps it in with a single volatile
+ * write, so contains() always sees a whole table, old or new.
+ */
+public class ColorTable
+{
+
+    static final int COLORS = 1 << 15;
+    volatile int[] bits = new int[COLORS / 32];
+
+    /**
+     * setRGB()
+     *
+     * This method rebuilds the table so a pixel is in the threshold when every
+     * channel is inside its range. The ranges include both ends.
+     */
+    public void setRGB(int redLow, int redHigh, int greenLow, int greenHigh,
+            int blueLow, int blueHigh)
+    {
+        int[] table = new int[COLORS / 32];
+        for (int i = 0; i < COLORS; i++)
+        {
+            int r = level(i >> 10);
+            int g = level(i >> 5);
+            int b = level(i);
+            set(table, i, r >= redLow && r <= redHigh
+                    && g >= greenLow && g <= greenHigh
+                    && b >= blueLow && b <= blueHigh);
+        }
+        bits = table;
+    }
+
+    /**
+     * setHSV()
+     *
+     * This method rebuilds the table from hue, saturation and value ranges.
+     * All three run from 0 - 255 like they do for NIVision, so hue is
+     * 256ths of a turn rather than degrees. The ranges include both ends.
+     */
+    public void setHSV(int hueLow, int hueHigh, int saturationLow,
+            int saturationHigh, int valueLow, int valueHigh)
+    {
+        int[] table = new int[COLORS / 32];
+        for (int i = 0; i < COLORS; i++)
+        {
+            int r = level(i >> 10);
+            int g = level(i >> 5);
+            int b = level(i);
+            int max = Math.max(r, Math.max(g, b));
+            int min = Math.min(r, Math.min(g, b));
+            int range = max - min;
+            int saturation = max == 0 ? 0 : 255 * range / max;
+            int hue = 0;
+            if (range != 0)
+            {
+                // Each sixth of the circle is 256 / 6 hue levels wide
+                if (max == r)
+                {
+                    hue = 256 * (g - b) / (6 * range);
+                } else if (max == g)
+                {
+                    hue = 256 * (2 * range + b - r) / (6 * range);
+                } else
+                {
+                    hue = 256 * (4 * range + r - g) / (6 * range);
+                }
+                hue = (hue + 256) & 0xFF;
+            }
+            set(table, i, hue >= hueLow && hue <= hueHigh
+                    && saturation >= saturationLow && saturation <= saturationHigh
+                    && max >= valueLow && max <= valueHigh);
+        }
+        bits = table;
+    }
+
+    /**
+     * contains()
+     *
+     * @param rgb a pixel packed as 0xRRGGBB
+     * @return true if the pixel is in the threshold
+     */
+    public boolean contains(int rgb)
+    {
+        int[] table = bits;
+        int i = ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F);
+        return (table[i >> 5] & (1 << (i & 31))) != 0;
+    }
+
+    static int level(int channel)
+    {
+        return ((channel & 0x1F) << 3) + 4;
+    }
+
+    static void set(int[] table, int i, boolean in)
+    {
+        if (in)
+        {
+            table[i >> 5] |= 1 << (i & 31);
+        } else
+        {
+            table[i >> 5] &= ~(1 << (i & 31));
+        }
+    }
+}
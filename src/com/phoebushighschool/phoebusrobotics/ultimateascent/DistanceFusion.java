@@ -0,0 +1,285 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * DistanceFusion
+ *
+ * This class combines the camera and ultrasonic distances to the target
+ * into one distance. Each source keeps its recent readings in a ring
+ * buffer. Readings that are too far from the median, measured in median
+ * absolute deviations, are thrown out as glitches. The rest are averaged,
+ * and the two averages are weighted by how much each one scatters, so the
+ * steadier source counts for more.
+ *
+ * Everything is worked out in update(), so the getters cost nothing.
+ */
+public class DistanceFusion
+{
+
+    final int WINDOW = 16;
+    // Readings older than this many seconds are not used
+    final double MAX_AGE = 0.5;
+    // Readings more than this many deviations from the median are outliers
+    final double OUTLIER_LIMIT = 3.0;
+    // How many inches of scatter halve the confidence
+    final double CONFIDENCE_SCALE = 3.0;
+    final double CAMERA_MIN_SIGMA = 2.0;
+    final double ULTRASONIC_MIN_SIGMA = 1.0;
+    History camera = new History(WINDOW, CAMERA_MIN_SIGMA);
+    History ultrasonic = new History(WINDOW, ULTRASONIC_MIN_SIGMA);
+    boolean valid = false;
+    double distance = 0.0;
+    double confidence = 0.0;
+
+    /**
+     * addCamera()
+     *
+     * This method adds a camera distance from a frame the target was found in.
+     *
+     * @param timestamp the FPGA time in seconds the frame was captured
+     * @param d the distance in inches
+     */
+    public void addCamera(double timestamp, double d)
+    {
+        camera.add(timestamp, d);
+    }
+
+    /**
+     * addUltrasonic()
+     *
+     * This method adds an ultrasonic reading.
+     *
+     * @param timestamp the FPGA time in seconds the reading was taken
+     * @param d the distance in inches
+     */
+    public void addUltrasonic(double timestamp, double d)
+    {
+        ultrasonic.add(timestamp, d);
+    }
+
+    /**
+     * update()
+     *
+     * This method works out the fused distance and its confidence from the
+     * readings that are recent enough.
+     *
+     * @param now the FPGA time in seconds
+     */
+    public void update(double now)
+    {
+        boolean haveCamera = camera.estimate(now, MAX_AGE, OUTLIER_LIMIT);
+        boolean haveUltrasonic = ultrasonic.estimate(now, MAX_AGE, OUTLIER_LIMIT);
+        valid = haveCamera || haveUltrasonic;
+        if (!valid)
+        {
+            confidence = 0.0;
+            return;
+        }
+        double variance;
+        double agreement = 1.0;
+        double kept = camera.inliers + ultrasonic.inliers;
+        double total = camera.samples + ultrasonic.samples;
+        if (haveCamera && haveUltrasonic)
+        {
+            double cameraWeight = 1.0 / camera.variance;
+            double ultrasonicWeight = 1.0 / ultrasonic.variance;
+            variance = 1.0 / (cameraWeight + ultrasonicWeight);
+            distance = (camera.mean * cameraWeight + ultrasonic.mean * ultrasonicWeight) * variance;
+            // Two sources that disagree by more than their scatter explains
+            // are probably not looking at the same thing
+            double difference = Math.abs(camera.mean - ultrasonic.mean);
+            double expected = OUTLIER_LIMIT * Math.sqrt(camera.variance + ultrasonic.variance);
+            if (difference > expected)
+            {
+                agreement = expected / difference;
+            }
+        } else if (haveCamera)
+        {
+            variance = camera.variance;
+            distance = camera.mean;
+        } else
+        {
+            variance = ultrasonic.variance;
+            distance = ultrasonic.mean;
+        }
+        confidence = CONFIDENCE_SCALE / (CONFIDENCE_SCALE + Math.sqrt(variance))
+                * (kept / total) * agreement;
+    }
+
+    /**
+     * hasDistance()
+     *
+     * @return true if either source had recent readings at the last update()
+     */
+    public boolean hasDistance()
+    {
+        return valid;
+    }
+
+    /**
+     * getDistance()
+     *
+     * @return the fused distance in inches
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * getConfidence()
+     *
+     * @return from 0 - 1, how much the fused distance can be trusted. It
+     * falls as the readings scatter, as more of them are thrown out, and when
+     * the two sources disagree.
+     */
+    public double getConfidence()
+    {
+        return confidence;
+    }
+
+    /**
+     * getCameraDistance()
+     *
+     * @return the camera's own average with outliers thrown out, 0.0 if it
+     * has no recent readings
+     */
+    public double getCameraDistance()
+    {
+        return camera.inliers > 0 ? camera.mean : 0.0;
+    }
+
+    /**
+     * getUltrasonicDistance()
+     *
+     * @return the ultrasonic sensor's own average with outliers thrown out,
+     * 0.0 if it has no recent readings
+     */
+    public double getUltrasonicDistance()
+    {
+        return ultrasonic.inliers > 0 ? ultrasonic.mean : 0.0;
+    }
+
+    /**
+     * History
+     *
+     * This class is the ring buffer of one source's readings and the
+     * estimate worked out from it.
+     */
+    static class History
+    {
+
+        double[] times;
+        double[] values;
+        double[] sorted;
+        double[] deviations;
+        double minSigma;
+        int next = 0;
+        int count = 0;
+        int samples = 0;
+        int inliers = 0;
+        double mean = 0.0;
+        double variance = 0.0;
+
+        History(int size, double minSigma)
+        {
+            times = new double[size];
+            values = new double[size];
+            sorted = new double[size];
+            deviations = new double[size];
+            this.minSigma = minSigma;
+        }
+
+        void add(double time, double value)
+        {
+            times[next] = time;
+            values[next] = value;
+            next = (next + 1) % times.length;
+            if (count < times.length)
+            {
+                count++;
+            }
+        }
+
+        /**
+         * estimate()
+         *
+         * This method averages the recent readings that are not outliers.
+         * The variance is that of the average, and never less than what
+         * minSigma allows.
+         *
+         * @return false if there were no recent readings
+         */
+        boolean estimate(double now, double maxAge, double outlierLimit)
+        {
+            samples = 0;
+            inliers = 0;
+            for (int i = 0; i < count; i++)
+            {
+                if (now - times[i] <= maxAge)
+                {
+                    sorted[samples++] = values[i];
+                }
+            }
+            if (samples == 0)
+            {
+                return false;
+            }
+            sort(sorted, samples);
+            double median = median(sorted, samples);
+            for (int i = 0; i < samples; i++)
+            {
+                deviations[i] = Math.abs(sorted[i] - median);
+            }
+            sort(deviations, samples);
+            // 1.4826 scales the median absolute deviation to a standard
+            // deviation for normally distributed readings
+            double limit = Math.max(outlierLimit * 1.4826 * median(deviations, samples), minSigma);
+
+            double sum = 0.0;
+            for (int i = 0; i < samples; i++)
+            {
+                if (Math.abs(sorted[i] - median) <= limit)
+                {
+                    sum += sorted[i];
+                    inliers++;
+                }
+            }
+            mean = sum / inliers;
+            double squares = 0.0;
+            for (int i = 0; i < samples; i++)
+            {
+                if (Math.abs(sorted[i] - median) <= limit)
+                {
+                    squares += (sorted[i] - mean) * (sorted[i] - mean);
+                }
+            }
+            double spread = inliers > 1 ? squares / (inliers - 1) : 0.0;
+            variance = Math.max(spread, minSigma * minSigma) / inliers;
+            return true;
+        }
+
+        static void sort(double[] a, int n)
+        {
+            for (int i = 1; i < n; i++)
+            {
+                double v = a[i];
+                int j = i - 1;
+                while (j >= 0 && a[j] > v)
+                {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = v;
+            }
+        }
+
+        static double median(double[] a, int n)
+        {
+            if ((n & 1) == 1)
+            {
+                return a[n / 2];
+            }
+            return (a[n / 2 - 1] + a[n / 2]) / 2.0;
+        }
+    }
+}
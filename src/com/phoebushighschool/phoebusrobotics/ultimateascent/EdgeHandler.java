@@ -0,0 +1,20 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * EdgeHandler
+ *
+ * This interface is called by the EdgeMonitor when a DigitalInput it is
+ * watching changes. It is called on the EdgeMonitor's thread, so it should
+ * do as little as it can and return.
+ */
+public interface EdgeHandler
+{
+
+    /**
+     * edge()
+     *
+     * @param value what the input changed to
+     * @param timestamp the FPGA time in seconds the change was seen
+     */
+    public void edge(boolean value, double timestamp);
+}
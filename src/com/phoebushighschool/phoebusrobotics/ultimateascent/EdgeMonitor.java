@@ -0,0 +1,178 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * EdgeMonitor
+ *
+ * This class watches DigitalInputs for changes on its own thread, reading
+ * them every Parameters.EDGE_POLL_PERIOD_MS instead of once per control
+ * loop iteration. Each change is timestamped and handed to the input's
+ * EdgeHandler straight away, so something like a motor that has to stop at
+ * a switch stops within a millisecond or two of it.
+ *
+ * get() lets a reader combine a SensorBus reading with any change seen
+ * since the snapshot was taken.
+ */
+public class EdgeMonitor
+{
+
+    public static final int MAX_INPUTS = 8;
+    static EdgeMonitor instance = null;
+    DigitalInput[] inputs = new DigitalInput[MAX_INPUTS];
+    EdgeHandler[] handlers = new EdgeHandler[MAX_INPUTS];
+    boolean[] values = new boolean[MAX_INPUTS];
+    double[] edgeTimes = new double[MAX_INPUTS];
+    volatile int inputCount = 0;
+    Thread poller;
+
+    EdgeMonitor()
+    {
+        poller = new Thread(new Poller());
+        // A late poll is a late stop, so this runs ahead of the control loop
+        poller.setPriority(Thread.NORM_PRIORITY + 2);
+        poller.start();
+    }
+
+    /**
+     * getInstance()
+     *
+     * @return EdgeMonitor - the robot's one edge monitor
+     */
+    public static synchronized EdgeMonitor getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new EdgeMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * watch()
+     *
+     * This method starts watching a DigitalInput.
+     *
+     * @param input the DigitalInput
+     * @param handler called on every change, or null to only timestamp them
+     * @return int - the slot to pass to get(), getEdgeTime() and setHandler()
+     */
+    public synchronized int watch(DigitalInput input, EdgeHandler handler)
+    {
+        int slot = inputCount;
+        if (slot == MAX_INPUTS)
+        {
+            throw new RuntimeException("Too many inputs on the EdgeMonitor");
+        }
+        inputs[slot] = input;
+        handlers[slot] = handler;
+        values[slot] = input.get();
+        edgeTimes[slot] = 0.0;
+        // The poller only looks at slots below inputCount
+        inputCount = slot + 1;
+        return slot;
+    }
+
+    /**
+     * setHandler()
+     *
+     * This method replaces the EdgeHandler of a watched input.
+     *
+     * @param slot the slot watch() returned
+     * @param handler called on every change, or null for none
+     */
+    public synchronized void setHandler(int slot, EdgeHandler handler)
+    {
+        handlers[slot] = handler;
+    }
+
+    /**
+     * Poller
+     *
+     * This class is the body of the thread that reads the inputs.
+     */
+    class Poller implements Runnable
+    {
+
+        public void run()
+        {
+            while (true)
+            {
+                poll();
+                try
+                {
+                    Thread.sleep(Parameters.EDGE_POLL_PERIOD_MS);
+                }
+                catch (InterruptedException e)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * poll()
+     *
+     * This method reads every watched input once and calls the handlers of
+     * the ones that changed. The handlers are called without holding the
+     * monitor's lock, so they can call back into it.
+     */
+    void poll()
+    {
+        int count = inputCount;
+        for (int i = 0; i < count; i++)
+        {
+            boolean value = inputs[i].get();
+            double now = Timer.getFPGATimestamp();
+            EdgeHandler handler;
+            synchronized (this)
+            {
+                if (value == values[i])
+                {
+                    continue;
+                }
+                values[i] = value;
+                edgeTimes[i] = now;
+                handler = handlers[i];
+            }
+            if (handler != null)
+            {
+                handler.edge(value, now);
+            }
+        }
+    }
+
+    /**
+     * get()
+     *
+     * This method returns a reading of a watched input from the SensorBus,
+     * unless the input has changed since the reading was taken, in which
+     * case it returns what it changed to.
+     *
+     * @param slot the slot watch() returned
+     * @param polled the value in the SensorBus snapshot
+     * @param polledTime the snapshot's timestamp
+     * @return boolean - the newer of the two
+     */
+    public synchronized boolean get(int slot, boolean polled, double polledTime)
+    {
+        if (edgeTimes[slot] > polledTime)
+        {
+            return values[slot];
+        }
+        return polled;
+    }
+
+    /**
+     * getEdgeTime()
+     *
+     * @param slot the slot watch() returned
+     * @return double - the FPGA time in seconds the input last changed, or 0.0
+     * if it has not
+     */
+    public synchronized double getEdgeTime(int slot)
+    {
+        return edgeTimes[slot];
+    }
+}
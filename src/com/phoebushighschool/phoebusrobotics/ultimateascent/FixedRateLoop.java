@@ -0,0 +1,261 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * FixedRateLoop
+ *
+ * This class paces a control loop at a fixed rate. Each tick has a
+ * deadline one period after the last one, so the time the loop body takes
+ * does not stretch the period the way Timer.delay() at the end of the body
+ * does. It counts overruns, ticks whose body ran past the next deadline, and
+ * measures how late each tick starts.
+ *
+ * What happens after an overrun is set by the OverrunPolicy:
+ * kSkip drops the missed ticks and waits for the next deadline on the
+ * original schedule, kCatchUp runs the missed ticks straight away, and
+ * kDegrade doubles the period until the loop keeps up again.
+ */
+public class FixedRateLoop
+{
+
+    // kCatchUp gives up on ticks more than this many periods behind
+    final int MAX_CATCH_UP = 5;
+    // kDegrade never slows the loop by more than this factor
+    final int MAX_DEGRADE = 4;
+    // kDegrade halves the period again after this many ticks without overrun
+    final int RECOVER_TICKS = 50;
+    double period;
+    double currentPeriod;
+    OverrunPolicy policy;
+    double deadline = 0.0;
+    int cleanTicks = 0;
+    int ticks = 0;
+    int overruns = 0;
+    int skipped = 0;
+    double lastJitter = 0.0;
+    double maxJitter = 0.0;
+    double totalJitter = 0.0;
+    double maxOverrun = 0.0;
+
+    /**
+     * FixedRateLoop
+     *
+     * @param period the time between ticks in seconds
+     * @param policy what to do when a tick overruns
+     */
+    public FixedRateLoop(double period, OverrunPolicy policy)
+    {
+        this.period = period;
+        this.policy = policy;
+        currentPeriod = period;
+    }
+
+    /**
+     * start()
+     *
+     * This method makes now the first tick's deadline and clears the
+     * statistics. It is called just before the loop starts.
+     */
+    public synchronized void start()
+    {
+        deadline = Timer.getFPGATimestamp();
+        currentPeriod = period;
+        cleanTicks = 0;
+        ticks = 0;
+        overruns = 0;
+        skipped = 0;
+        lastJitter = 0.0;
+        maxJitter = 0.0;
+        totalJitter = 0.0;
+        maxOverrun = 0.0;
+    }
+
+    /**
+     * waitForNextTick()
+     *
+     * This method is called at the end of the loop body. It sleeps until the
+     * next tick's deadline, handling an overrun by the policy if the body has
+     * already run past it.
+     */
+    public void waitForNextTick()
+    {
+        double wait = schedule(Timer.getFPGATimestamp());
+        if (wait > 0.0)
+        {
+            try
+            {
+                // Round up, waking a little late rather than early
+                Thread.sleep((long) Math.ceil(wait * 1000.0));
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+        started(Timer.getFPGATimestamp());
+    }
+
+    /**
+     * schedule()
+     *
+     * This method works out the next deadline.
+     *
+     * @param now the FPGA time in seconds the loop body finished
+     * @return double - how many seconds to wait for the deadline
+     */
+    synchronized double schedule(double now)
+    {
+        deadline += currentPeriod;
+        double late = now - deadline;
+        if (late <= 0.0)
+        {
+            if (policy == OverrunPolicy.kDegrade && currentPeriod > period
+                    && ++cleanTicks >= RECOVER_TICKS)
+            {
+                currentPeriod /= 2.0;
+                cleanTicks = 0;
+            }
+            return -late;
+        }
+        overruns++;
+        if (late > maxOverrun)
+        {
+            maxOverrun = late;
+        }
+        if (policy == OverrunPolicy.kCatchUp && late < MAX_CATCH_UP * currentPeriod)
+        {
+            // Run the missed tick now, its deadline stays on the schedule
+            return 0.0;
+        }
+        if (policy == OverrunPolicy.kDegrade)
+        {
+            cleanTicks = 0;
+            if (currentPeriod < period * MAX_DEGRADE)
+            {
+                currentPeriod *= 2.0;
+            }
+        }
+        // Drop the missed ticks and wait for the next deadline
+        int missed = (int) (late / currentPeriod) + 1;
+        skipped += missed;
+        deadline += missed * currentPeriod;
+        return deadline - now;
+    }
+
+    synchronized void started(double now)
+    {
+        ticks++;
+        lastJitter = now - deadline;
+        if (lastJitter > maxJitter)
+        {
+            maxJitter = lastJitter;
+        }
+        totalJitter += lastJitter;
+    }
+
+    /**
+     * isDegraded()
+     *
+     * @return true - kDegrade has slowed the loop down, so the loop body
+     * should leave out anything that can wait
+     */
+    public synchronized boolean isDegraded()
+    {
+        return currentPeriod > period;
+    }
+
+    public double getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * getCurrentPeriod()
+     *
+     * @return double - the period in seconds, longer than getPeriod() while
+     * degraded
+     */
+    public synchronized double getCurrentPeriod()
+    {
+        return currentPeriod;
+    }
+
+    public synchronized int getTicks()
+    {
+        return ticks;
+    }
+
+    public synchronized int getOverruns()
+    {
+        return overruns;
+    }
+
+    /**
+     * getSkipped()
+     *
+     * @return int - how many ticks were dropped after overruns
+     */
+    public synchronized int getSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * getMaxOverrun()
+     *
+     * @return double - the furthest past its deadline the loop body has run,
+     * in seconds
+     */
+    public synchronized double getMaxOverrun()
+    {
+        return maxOverrun;
+    }
+
+    /**
+     * getLastJitter()
+     *
+     * @return double - how late the last tick started after its deadline, in
+     * seconds
+     */
+    public synchronized double getLastJitter()
+    {
+        return lastJitter;
+    }
+
+    public synchronized double getMaxJitter()
+    {
+        return maxJitter;
+    }
+
+    public synchronized double getMeanJitter()
+    {
+        if (ticks == 0)
+        {
+            return 0.0;
+        }
+        return totalJitter / ticks;
+    }
+
+    /**
+     * OverrunPolicy
+     *
+     * What a FixedRateLoop does when the loop body runs past the next
+     * deadline.
+     */
+    public static class OverrunPolicy
+    {
+
+        private static final int kSkipValue = 0;
+        private static final int kCatchUpValue = 1;
+        private static final int kDegradeValue = 2;
+        private final int value;
+        public static final OverrunPolicy kSkip = new OverrunPolicy(kSkipValue);
+        public static final OverrunPolicy kCatchUp = new OverrunPolicy(kCatchUpValue);
+        public static final OverrunPolicy kDegrade = new OverrunPolicy(kDegradeValue);
+
+        private OverrunPolicy(int policy)
+        {
+            this.value = policy;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * FrameSource
+ *
+ * This interface supplies camera frames to the JavaVisionEngine as packed
+ * 0xRRGGBB pixels, one int per pixel in row major order. It lets the pure
+ * Java pipeline be fed from the Axis camera, a coprocessor capture device or
+ * a set of saved images.
+ */
+public interface FrameSource
+{
+
+    /**
+     * getWidth()
+     *
+     * @return the width of every frame in pixels
+     */
+    public int getWidth();
+
+    /**
+     * getHeight()
+     *
+     * @return the height of every frame in pixels
+     */
+    public int getHeight();
+
+    /**
+     * readFrame()
+     *
+     * This method copies the next frame into the caller's buffer. It may
+     * block until the frame arrives.
+     *
+     * @param pixels a buffer of at least getWidth() * getHeight() entries
+     * @return true - a frame was copied into pixels
+     *         false - no frame is available
+     */
+    public boolean readFrame(int[] pixels);
+
+    /**
+     * getFrameTimestamp()
+     *
+     * @return the time in seconds the last frame returned by readFrame() was
+     * captured, on the same clock as Timer.getFPGATimestamp()
+     */
+    public double getFrameTimestamp();
+}
@@ -9,7 +9,7 @@ public class GameMech {
     private UltimateAscentBot robot;
     protected Indexer loader;
     public Shooter shooter;
-    private GameMechState currentState;
+    private volatile GameMechState currentState;
     private GameMechState desiredState;
 
     /**
@@ -23,6 +23,31 @@ public class GameMech {
         shooter = new Shooter();
         currentState = GameMechState.kManualControl;
         desiredState = GameMechState.kManualControl;
+        EdgeMonitor.getInstance().setHandler(shooter.discEdge, new DiscLoaded());
+    }
+
+    /**
+     * DiscLoaded
+     *
+     * This class pulls the indexer piston back as soon as a disc reaches the
+     * shooter while reloading, instead of on the next processGameMech().
+     * It runs on the EdgeMonitor's thread, so it holds the GameMech's lock
+     * and arms the shooter itself; processGameMech() then sees kArmed and
+     * does not push the piston out again from an older snapshot.
+     */
+    class DiscLoaded implements EdgeHandler {
+
+        public void edge(boolean value, double timestamp) {
+            if (!value) {
+                return;
+            }
+            synchronized (GameMech.this) {
+                if (currentState == GameMechState.kReloading) {
+                    loader.setIndexerPiston(false);
+                    currentState = GameMechState.kArmed;
+                }
+            }
+        }
     }
 
     /**
@@ -50,16 +75,15 @@ public class GameMech {
     /**
      * cockShooter
      *
-     * @return
+     * This method moves the shooter cam until it is cocked.
+     *
+     * @param sensors - this run's copy of the sensor snapshot
+     * @return true - the shooter is cocked
      * @throws CANTimeoutException
      */
-    public boolean cockShooter() throws CANTimeoutException 
+    public boolean cockShooter(SensorSnapshot sensors) throws CANTimeoutException 
     {
-        if(shooter.isShooterCocked())
-        {
-            return true;
-        }
-        return false;
+        return shooter.cockShooter(sensors);
     }
 
     /**
@@ -92,10 +116,11 @@ public class GameMech {
 
     /**
      *
+     * @param sensors - this run's copy of the sensor snapshot
      * @return
      */
-    public boolean isShooterLoaded() {
-        return shooter.isDiscLoaded();
+    public boolean isShooterLoaded(SensorSnapshot sensors) {
+        return shooter.isDiscLoaded(sensors);
     }
 
     /**
@@ -144,22 +169,24 @@ public class GameMech {
      * This method should NEVER be called when the shooter is in Manual Control
      * mode!
      *
+     * @param sensors - this run's copy of the sensor snapshot
      * @return - the GameMech's current state
      */
-    public GameMechState processGameMech() throws CANTimeoutException {
+    public GameMechState processGameMech(SensorSnapshot sensors) throws CANTimeoutException {
         if(currentState == GameMechState.kManualControl)        // $$$ ToDo: Check to see if this is the right condition.
         {
-            if (shooter.isShooterCocked() && shooter.isDiscLoaded())
+            boolean cocked = shooter.isShooterCocked(sensors);
+            if (cocked && shooter.isDiscLoaded(sensors))
             {
                 currentState = GameMechState.kArmed;
                 return currentState;
             }
-            else if (shooter.isShooterCocked())
+            else if (cocked)
             {
                 currentState = GameMechState.kReloading;
                 return currentState;
             }
-            else if (!shooter.isShooterCocked())
+            else
             {
                 currentState = GameMechState.kRecocking;
                 return currentState;
@@ -178,22 +205,29 @@ public class GameMech {
 
         // We are not at our desired state yet
         if (currentState == GameMechState.kRecocking) {
-            if (shooter.cockShooter()) {
+            if (shooter.cockShooter(sensors)) {
                 currentState = GameMechState.kReloading;
                 return currentState;
             }
         }
         if (currentState == GameMechState.kReloading) {
-            if (shooter.isDiscLoaded()) {
-                loader.setIndexerPiston(false);
-                currentState = GameMechState.kArmed;
-                return currentState;
-            } else {
-                loader.setIndexerPiston(true);
+            // Holds the same lock as DiscLoaded, which may arm the shooter
+            // between the check above and the piston
+            synchronized (this) {
+                if (currentState != GameMechState.kReloading) {
+                    return currentState;
+                }
+                if (shooter.isDiscLoaded(sensors)) {
+                    loader.setIndexerPiston(false);
+                    currentState = GameMechState.kArmed;
+                    return currentState;
+                } else {
+                    loader.setIndexerPiston(true);
+                }
             }
         }
         if (currentState == GameMechState.kArmed) {
-            if (shooter.shoot()) {
+            if (shooter.shoot(sensors)) {
                 currentState = GameMechState.kUnloaded;
                 return currentState;
             }
@@ -4,16 +4,378 @@
  */
 package com.phoebushighschool.phoebusrobotics.ultimateascent;
 
-import edu.wpi.first.wpilibj.Gyro;
+import edu.wpi.first.wpilibj.AccumulatorResult;
+import edu.wpi.first.wpilibj.AnalogChannel;
 import edu.wpi.first.wpilibj.PIDSource;
+import edu.wpi.first.wpilibj.Timer;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import javax.microedition.io.Connector;
+import javax.microedition.io.file.FileConnection;
 /**
+ * GyroSensor
+ * 
+ * This class is the robot's gyro. Besides the current angle it keeps a 
+ * history of recent angles, sampled on its own thread, so the angle the robot 
+ * was at when a camera frame was captured can be looked up afterwards.
+ * 
+ * It integrates the gyro with the analog accumulator the same way WPILib's 
+ * Gyro does, but keeps its calibration (the accumulator center, the 
+ * fractional offset and the drift) in a file. At startup the saved 
+ * calibration is checked against a short sample and the full calibration is 
+ * only run when it is off. While the robot is disabled the drift is tracked 
+ * and the file kept up to date.
  *
  * @author djennings001
  */
-public class GyroSensor extends Gyro {
+public class GyroSensor implements PIDSource {
+    
+    // The same accumulator setup as WPILib's Gyro. Oversampling keeps the low 
+    // bits that averaging would throw away, which the center, offset and 
+    // drift all need.
+    static final int AVERAGE_BITS = 0;
+    static final int OVERSAMPLE_BITS = 10;
+    static final double SAMPLES_PER_SECOND = 50.0;
+    static final double VOLTS_PER_DEGREE_PER_SECOND = 0.007;
+    // Version 1 files were saved with 7 average bits, so their center is 
+    // not in the same units
+    static final int CALIBRATION_FILE_VERSION = 2;
+    
+    AnalogChannel analog;
+    int channel;
+    AccumulatorResult result = new AccumulatorResult();
+    int center = 0;
+    double offset = 0.0;
+    double drift = 0.0;
+    double scale;
+    
+    // The angle is counted from the last reset, or the last time the drift 
+    // changed
+    double baseAngle = 0.0;
+    long baseValue = 0;
+    long baseCount = 0;
+    
+    boolean trackingDrift = false;
+    long driftValue = 0;
+    long driftCount = 0;
+    boolean calibrationChanged = false;
+    double lastSave = 0.0;
+    
+    static final int HISTORY_SIZE = 256;
+    double[] historyTime = new double[HISTORY_SIZE];
+    double[] historyAngle = new double[HISTORY_SIZE];
+    int historyCount = 0;
+    int historyNext = 0;
+    Thread sampler;
     
     public GyroSensor(int channel) {
-        super(channel);
+        this.channel = channel;
+        analog = new AnalogChannel(channel);
+        analog.setAverageBits(AVERAGE_BITS);
+        analog.setOversampleBits(OVERSAMPLE_BITS);
+        analog.getModule().setSampleRate(SAMPLES_PER_SECOND * (1 << (AVERAGE_BITS + OVERSAMPLE_BITS)));
+        analog.initAccumulator();
+        // Degrees per unit of accumulated value
+        scale = 1e-9 * analog.getLSBWeight() * (1 << AVERAGE_BITS)
+                / (analog.getModule().getSampleRate() * VOLTS_PER_DEGREE_PER_SECOND);
+        if (!loadCalibration() || !validateCalibration()) {
+            calibrate();
+            saveCalibration();
+        }
+        reset();
+        sampler = new Thread(new Sampler());
+        // Samples have to be taken on time to be worth anything
+        sampler.setPriority(Thread.NORM_PRIORITY + 1);
+        sampler.start();
+    }
+    
+    /**
+     * Sampler
+     * 
+     * This class is the body of the thread that fills the angle history.
+     */
+    class Sampler implements Runnable {
+        
+        public void run() {
+            while (true) {
+                recordSample(Timer.getFPGATimestamp(), getAngle());
+                try {
+                    Thread.sleep(Parameters.GYRO_SAMPLE_PERIOD_MS);
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+    }
+    
+    /**
+     * calibrate()
+     * 
+     * This method runs the full calibration, measuring the gyro's output 
+     * while the robot sits still for Parameters.GYRO_CALIBRATION_TIME seconds.
+     */
+    void calibrate() {
+        System.out.println("Calibrating gyro");
+        analog.setAccumulatorCenter(0);
+        analog.resetAccumulator();
+        Timer.delay(Parameters.GYRO_SETTLE_TIME);
+        analog.resetAccumulator();
+        Timer.delay(Parameters.GYRO_CALIBRATION_TIME);
+        analog.getAccumulatorOutput(result);
+        double average = (double) result.value / (double) result.count;
+        synchronized (this) {
+            center = (int) (average + 0.5);
+            offset = average - center;
+            drift = 0.0;
+        }
+        analog.setAccumulatorCenter(center);
+        analog.setAccumulatorDeadband(0);
+    }
+    
+    /**
+     * validateCalibration()
+     * 
+     * This method checks the calibration read from the file by measuring the 
+     * gyro for Parameters.GYRO_VALIDATION_TIME seconds. With the robot still, 
+     * the rate it measures should be the saved drift.
+     * 
+     * @return true if the saved calibration can be used
+     */
+    boolean validateCalibration() {
+        analog.setAccumulatorCenter(center);
+        analog.setAccumulatorDeadband(0);
+        analog.resetAccumulator();
+        Timer.delay(Parameters.GYRO_VALIDATION_TIME);
+        analog.getAccumulatorOutput(result);
+        if (result.count == 0) {
+            return false;
+        }
+        double error = getRate(result.value, result.count) - drift;
+        if (Math.abs(error) > Parameters.GYRO_CALIBRATION_TOLERANCE) {
+            System.out.println("Saved gyro calibration is off by " + error + " degrees per second");
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * loadCalibration()
+     * 
+     * This method reads the center, offset and drift saved by 
+     * saveCalibration().
+     * 
+     * @return true if a calibration for this channel was read
+     */
+    boolean loadCalibration() {
+        FileConnection file = null;
+        try {
+            file = (FileConnection) Connector.open(Parameters.GYRO_CALIBRATION_FILE, Connector.READ);
+            if (!file.exists()) {
+                return false;
+            }
+            DataInputStream in = file.openDataInputStream();
+            try {
+                if (in.readInt() != CALIBRATION_FILE_VERSION || in.readInt() != channel) {
+                    return false;
+                }
+                center = in.readInt();
+                offset = in.readDouble();
+                drift = in.readDouble();
+            } finally {
+                in.close();
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not read gyro calibration: " + e);
+            return false;
+        } finally {
+            close(file);
+        }
+    }
+    
+    /**
+     * saveCalibration()
+     * 
+     * This method writes the center, offset and drift to 
+     * Parameters.GYRO_CALIBRATION_FILE.
+     */
+    void saveCalibration() {
+        int savedCenter;
+        double savedOffset;
+        double savedDrift;
+        synchronized (this) {
+            savedCenter = center;
+            savedOffset = offset;
+            savedDrift = drift;
+            calibrationChanged = false;
+            lastSave = Timer.getFPGATimestamp();
+        }
+        FileConnection file = null;
+        try {
+            file = (FileConnection) Connector.open(Parameters.GYRO_CALIBRATION_FILE, Connector.READ_WRITE);
+            if (file.exists()) {
+                file.truncate(0);
+            } else {
+                file.create();
+            }
+            DataOutputStream out = file.openDataOutputStream();
+            try {
+                out.writeInt(CALIBRATION_FILE_VERSION);
+                out.writeInt(channel);
+                out.writeInt(savedCenter);
+                out.writeDouble(savedOffset);
+                out.writeDouble(savedDrift);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not save gyro calibration: " + e);
+        } finally {
+            close(file);
+        }
+    }
+    
+    static void close(FileConnection file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+    
+    /**
+     * trackDrift()
+     * 
+     * This method is called over and over while the robot is disabled. Every 
+     * Parameters.GYRO_DRIFT_WINDOW seconds it measures the gyro's rate, and if 
+     * the robot was still (the rate is within Parameters.GYRO_STATIONARY_RATE 
+     * of the drift) moves the drift toward it. The calibration file is 
+     * rewritten at most every Parameters.GYRO_SAVE_PERIOD seconds.
+     */
+    public void trackDrift() {
+        boolean save;
+        synchronized (this) {
+            analog.getAccumulatorOutput(result);
+            if (!trackingDrift) {
+                trackingDrift = true;
+                driftValue = result.value;
+                driftCount = result.count;
+                return;
+            }
+            long count = result.count - driftCount;
+            if (count < Parameters.GYRO_DRIFT_WINDOW * SAMPLES_PER_SECOND) {
+                return;
+            }
+            double error = getRate(result.value - driftValue, count) - drift;
+            if (Math.abs(error) < Parameters.GYRO_STATIONARY_RATE) {
+                // Keep the angle where it is when the drift changes
+                baseAngle = getAngle(result.value, result.count);
+                baseValue = result.value;
+                baseCount = result.count;
+                drift += Parameters.GYRO_DRIFT_GAIN * error;
+                calibrationChanged = true;
+            }
+            driftValue = result.value;
+            driftCount = result.count;
+            save = calibrationChanged
+                    && Timer.getFPGATimestamp() - lastSave > Parameters.GYRO_SAVE_PERIOD;
+        }
+        if (save) {
+            saveCalibration();
+        }
+    }
+    
+    /**
+     * stopTrackingDrift()
+     * 
+     * This method is called when the robot is enabled, so the time it spends 
+     * moving is not taken for drift.
+     */
+    public synchronized void stopTrackingDrift() {
+        trackingDrift = false;
+    }
+    
+    /**
+     * getRate()
+     * 
+     * @param value accumulated value over some samples
+     * @param count how many samples
+     * @return double - the rate in degrees per second, not counting the drift
+     */
+    double getRate(long value, long count) {
+        return (value - count * offset) * scale * SAMPLES_PER_SECOND / count;
+    }
+    
+    double getAngle(long value, long count) {
+        return baseAngle + ((value - baseValue) - (count - baseCount) * offset) * scale
+                - drift * (count - baseCount) / SAMPLES_PER_SECOND;
+    }
+    
+    synchronized void recordSample(double time, double angle) {
+        historyTime[historyNext] = time;
+        historyAngle[historyNext] = angle;
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        if (historyCount < HISTORY_SIZE) {
+            historyCount++;
+        }
+    }
+    
+    /**
+     * getAngleAt()
+     * 
+     * This method looks up the angle the robot was at some time ago, 
+     * interpolating between the two samples around that time. Times older 
+     * than the history get the oldest angle, and times newer than the last 
+     * sample get the current angle.
+     * 
+     * @param time an FPGA time in seconds
+     * @return double - an angle in degrees, like getAngle()
+     */
+    public synchronized double getAngleAt(double time) {
+        if (historyCount == 0) {
+            return getAngle();
+        }
+        int newer = -1;
+        for (int n = 0; n < historyCount; n++) {
+            int i = (historyNext - 1 - n + HISTORY_SIZE) % HISTORY_SIZE;
+            if (historyTime[i] <= time) {
+                if (newer < 0) {
+                    return getAngle();
+                }
+                double fraction = (time - historyTime[i]) / (historyTime[newer] - historyTime[i]);
+                return historyAngle[i] + fraction * (historyAngle[newer] - historyAngle[i]);
+            }
+            newer = i;
+        }
+        return historyAngle[newer];
+    }
+    
+    /**
+     * getAngularRate()
+     * 
+     * This method returns how fast the robot is turning, from the samples 
+     * taken over the last Parameters.GYRO_RATE_WINDOW seconds.
+     * 
+     * @return double - degrees per second, positive when the angle is growing
+     */
+    public synchronized double getAngularRate() {
+        if (historyCount < 2) {
+            return 0.0;
+        }
+        int newest = (historyNext - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        int oldest = newest;
+        for (int n = 1; n < historyCount; n++) {
+            oldest = (newest - n + HISTORY_SIZE) % HISTORY_SIZE;
+            if (historyTime[newest] - historyTime[oldest] >= Parameters.GYRO_RATE_WINDOW) {
+                break;
+            }
+        }
+        double dt = historyTime[newest] - historyTime[oldest];
+        if (dt <= 0.0) {
+            return 0.0;
+        }
+        return (historyAngle[newest] - historyAngle[oldest]) / dt;
     }
     
     /**
@@ -23,8 +385,22 @@ public class GyroSensor extends Gyro {
      * 
      * @return double - an angle in degrees, not limited to -360.0 - 0.0 - 360.0
      */
-    public double getAngle() {
-        return super.getAngle();
+    public synchronized double getAngle() {
+        analog.getAccumulatorOutput(result);
+        return getAngle(result.value, result.count);
+    }
+    
+    /**
+     * reset()
+     * 
+     * This method makes the robot's current heading 0.0.
+     */
+    public synchronized void reset() {
+        analog.resetAccumulator();
+        baseAngle = 0.0;
+        baseValue = 0;
+        baseCount = 0;
+        trackingDrift = false;
     }
     
     /**
@@ -0,0 +1,108 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.image.BinaryImage;
+import edu.wpi.first.wpilibj.image.NIVisionException;
+
+/**
+ * ImagePool
+ *
+ * This class keeps native binary images that are done with so they can be
+ * written into again instead of being freed and allocated once per frame.
+ * Images are handed out by resolution, so a reused image never has to be
+ * resized.
+ */
+public class ImagePool
+{
+
+    BinaryImage[] images;
+    int[] widths;
+    int[] heights;
+    int count = 0;
+
+    /**
+     * ImagePool
+     *
+     * @param capacity the most images the pool holds, images given back
+     * past that are freed
+     */
+    public ImagePool(int capacity)
+    {
+        images = new BinaryImage[capacity];
+        widths = new int[capacity];
+        heights = new int[capacity];
+    }
+
+    /**
+     * take()
+     *
+     * @return an image of the resolution from the pool, or null if there is
+     * none and a new one has to be made
+     */
+    public BinaryImage take(int width, int height)
+    {
+        for (int i = count - 1; i >= 0; i--)
+        {
+            if (widths[i] == width && heights[i] == height)
+            {
+                BinaryImage image = images[i];
+                count--;
+                images[i] = images[count];
+                widths[i] = widths[count];
+                heights[i] = heights[count];
+                images[count] = null;
+                return image;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * give()
+     *
+     * This method puts an image back in the pool. Nothing may use the image
+     * after this.
+     *
+     * @param image the image, may be null
+     */
+    public void give(BinaryImage image)
+    {
+        if (image == null)
+        {
+            return;
+        }
+        try
+        {
+            if (count == images.length)
+            {
+                image.free();
+                return;
+            }
+            widths[count] = image.getWidth();
+            heights[count] = image.getHeight();
+            images[count] = image;
+            count++;
+        } catch (NIVisionException e)
+        {
+        }
+    }
+
+    /**
+     * free()
+     *
+     * This method frees every image in the pool.
+     */
+    public void free()
+    {
+        for (int i = 0; i < count; i++)
+        {
+            try
+            {
+                images[i].free();
+            } catch (NIVisionException e)
+            {
+            }
+            images[i] = null;
+        }
+        count = 0;
+    }
+}
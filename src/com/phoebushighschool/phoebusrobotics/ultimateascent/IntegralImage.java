@@ -0,0 +1,129 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * IntegralImage
+ *
+ * This class is a summed-area table of a rectangle of a RunLengthImage:
+ * every entry holds the number of set pixels above and to the left of it.
+ * Once it is built the number of set pixels in any rectangle inside it,
+ * and so any row or column average, takes four array reads no matter how
+ * big the rectangle is.
+ */
+public class IntegralImage
+{
+
+    int[] sums;
+    int[] row;
+    int left;
+    int top;
+    int width = 0;
+    int height = 0;
+    int stride;
+
+    /**
+     * IntegralImage
+     *
+     * @param maxWidth the widest rectangle the table will be built for
+     * @param maxHeight the tallest rectangle the table will be built for
+     */
+    public IntegralImage(int maxWidth, int maxHeight)
+    {
+        sums = new int[(maxWidth + 1) * (maxHeight + 1)];
+        row = new int[maxWidth];
+    }
+
+    /**
+     * build()
+     *
+     * This method fills in the table for a rectangle of image.
+     */
+    public void build(RunLengthImage image, int left, int top, int width, int height)
+    {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        stride = width + 1;
+        for (int c = 0; c < stride; c++)
+        {
+            sums[c] = 0;
+        }
+        for (int r = 0; r < height; r++)
+        {
+            image.fillRow(top + r, left, width, row);
+            int above = r * stride;
+            int here = above + stride;
+            int total = 0;
+            sums[here] = 0;
+            for (int c = 0; c < width; c++)
+            {
+                total += row[c];
+                sums[here + c + 1] = sums[above + c + 1] + total;
+            }
+        }
+    }
+
+    /**
+     * contains()
+     *
+     * @return true if the rectangle lies inside the part of the image the
+     * table was built for
+     */
+    public boolean contains(int left, int top, int width, int height)
+    {
+        return left >= this.left && top >= this.top
+                && left + width <= this.left + this.width
+                && top + height <= this.top + this.height;
+    }
+
+    /**
+     * sum()
+     *
+     * @return the number of set pixels in the rectangle, which must lie
+     * inside the table
+     */
+    public int sum(int left, int top, int width, int height)
+    {
+        int x0 = left - this.left;
+        int y0 = (top - this.top) * stride;
+        int x1 = x0 + width;
+        int y1 = y0 + height * stride;
+        return sums[y1 + x1] - sums[y0 + x1] - sums[y1 + x0] + sums[y0 + x0];
+    }
+
+    /**
+     * getColumnAverages()
+     *
+     * This method fills averages with the fraction of set pixels in every
+     * column of a rectangle inside the table.
+     *
+     * @return the number of entries written to averages
+     */
+    public int getColumnAverages(int left, int top, int columns, int rows, float[] averages)
+    {
+        columns = Math.min(columns, averages.length);
+        for (int c = 0; c < columns; c++)
+        {
+            averages[c] = (float) sum(left + c, top, 1, rows) / rows;
+        }
+        return columns;
+    }
+
+    /**
+     * getRowAverages()
+     *
+     * This method fills averages with the fraction of set pixels in every
+     * row of a rectangle inside the table.
+     *
+     * @return the number of entries written to averages
+     */
+    public int getRowAverages(int left, int top, int columns, int rows, float[] averages)
+    {
+        rows = Math.min(rows, averages.length);
+        for (int r = 0; r < rows; r++)
+        {
+            averages[r] = (float) sum(left, top + r, columns, 1) / columns;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,871 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * JavaVisionEngine
+ *
+ * This class runs the particle pipeline in plain Java on frames from a
+ * FrameSource. It thresholds the frame, labels 8-connected particles, fills
+ * each particle to its convex hull, filters the particles on hull area and
+ * reports them largest first, just like the NIVision pipeline does.
+ *
+ * Each pixel is thresholded with one ColorTable lookup, and the result goes
+ * straight into a RunLengthImage, so the mask is a list of runs rather than
+ * a byte per pixel, and labeling and hull work on the runs. The row and
+ * column averages used for scoring come from an IntegralImage built once
+ * per frame.
+ *
+ * On a multi-core coprocessor the frame can be split into horizontal strips
+ * that are thresholded and labeled by a fixed set of worker threads. The
+ * strips are then joined at their seams, which gives exactly the same
+ * particles as doing the whole frame on one thread.
+ *
+ * Every buffer is allocated in the constructor and reused, so processing a
+ * frame does not allocate anything. Since it does not need the NIVision
+ * library it can also run on a coprocessor or a desktop machine.
+ */
+public class JavaVisionEngine implements VisionEngine
+{
+
+    static final int MAX_CANDIDATES = 16;
+    static final int MAX_RUNS = 16384;
+    FrameSource source;
+    int width;
+    int height;
+    int[] pixels;
+    RunLengthImage runs;
+    RunLengthImage coarseRuns = null;
+    IntegralImage integral;
+    boolean integralBuilt = false;
+    int[] rowLeft;
+    int[] rowRight;
+    int[] leftChain;
+    int[] rightChain;
+    ParticleReport[] particles;
+    double[] rectLong;
+    double[] rectShort;
+    int particleCount = 0;
+    ColorTable colors = new ColorTable();
+    int minArea = 0;
+    int maxArea = Integer.MAX_VALUE;
+    int regionLeft;
+    int regionTop;
+    int regionRight;
+    int regionBottom;
+    int pyramidFactor = 1;
+    int[] candidateLeft = new int[MAX_CANDIDATES];
+    int[] candidateTop = new int[MAX_CANDIDATES];
+    int[] candidateRight = new int[MAX_CANDIDATES];
+    int[] candidateBottom = new int[MAX_CANDIDATES];
+    int candidateCount = 0;
+    int threadCount;
+    RunLengthImage[] strips;
+    int[] stripTop;
+    int[] stripBottom;
+    final Object stripLock = new Object();
+    int stripGeneration = 0;
+    int stripsPending = 0;
+    // Cleared by free() to stop the strip workers
+    boolean running = true;
+    StageTimer timer = new NoTimer();
+    int readStage;
+    int coarseStage;
+    int thresholdStage;
+    int measureStage;
+
+    /**
+     * JavaVisionEngine
+     *
+     * @param frameSource where the frames come from
+     * @param maxParticles the most particles reported for one frame, the
+     * smallest are dropped when there are more
+     */
+    public JavaVisionEngine(FrameSource frameSource, int maxParticles)
+    {
+        this(frameSource, maxParticles, 1);
+    }
+
+    /**
+     * JavaVisionEngine
+     *
+     * @param frameSource where the frames come from
+     * @param maxParticles the most particles reported for one frame, the
+     * smallest are dropped when there are more
+     * @param threads how many strips each frame is split into, each one
+     * thresholded and labeled on its own thread. 1 does everything on the
+     * thread that calls processFrame().
+     */
+    public JavaVisionEngine(FrameSource frameSource, int maxParticles, int threads)
+    {
+        source = frameSource;
+        width = source.getWidth();
+        height = source.getHeight();
+        pixels = new int[width * height];
+        runs = new RunLengthImage(width, height, MAX_RUNS);
+        integral = new IntegralImage(width, height);
+        rowLeft = new int[height];
+        rowRight = new int[height];
+        leftChain = new int[height];
+        rightChain = new int[height];
+        particles = new ParticleReport[maxParticles];
+        rectLong = new double[maxParticles];
+        rectShort = new double[maxParticles];
+        for (int i = 0; i < maxParticles; i++)
+        {
+            particles[i] = new ParticleReport();
+        }
+        clearRegionOfInterest();
+        threadCount = Math.max(1, Math.min(threads, height));
+        if (threadCount > 1)
+        {
+            strips = new RunLengthImage[threadCount];
+            stripTop = new int[threadCount];
+            stripBottom = new int[threadCount];
+            for (int i = 0; i < threadCount; i++)
+            {
+                strips[i] = new RunLengthImage(width, height, MAX_RUNS);
+            }
+            // The thread calling processFrame() does the first strip itself
+            for (int i = 1; i < threadCount; i++)
+            {
+                new Thread(new StripWorker(i)).start();
+            }
+        }
+    }
+
+    public void setThresholdRGB(int redLow, int redHigh, int greenLow,
+            int greenHigh, int blueLow, int blueHigh)
+    {
+        colors.setRGB(redLow, redHigh, greenLow, greenHigh, blueLow, blueHigh);
+    }
+
+    public void setThresholdHSV(int hueLow, int hueHigh, int saturationLow,
+            int saturationHigh, int valueLow, int valueHigh)
+    {
+        colors.setHSV(hueLow, hueHigh, saturationLow, saturationHigh, valueLow, valueHigh);
+    }
+
+    public void setParticleAreaRange(int minArea, int maxArea)
+    {
+        this.minArea = minArea;
+        this.maxArea = maxArea;
+    }
+
+    public void setRegionOfInterest(int left, int top, int width, int height)
+    {
+        regionLeft = Math.max(0, left);
+        regionTop = Math.max(0, top);
+        regionRight = Math.min(this.width, left + width);
+        regionBottom = Math.min(this.height, top + height);
+        if (regionRight <= regionLeft || regionBottom <= regionTop)
+        {
+            clearRegionOfInterest();
+        }
+    }
+
+    public void clearRegionOfInterest()
+    {
+        regionLeft = 0;
+        regionTop = 0;
+        regionRight = width;
+        regionBottom = height;
+    }
+
+    /**
+     * setPyramidFactor()
+     *
+     * This method turns on the coarse to fine search. Each frame is first
+     * thresholded and labeled at 1/factor of its resolution, and only the
+     * areas around the particles found there get a full resolution pass. The
+     * factor must stay smaller than the thinnest part of the target in pixels
+     * or the coarse pass can miss it.
+     *
+     * @param factor 2 to search at 320x240 first, 4 for 160x120, 1 to turn
+     * the coarse search off
+     */
+    public void setPyramidFactor(int factor)
+    {
+        pyramidFactor = Math.max(1, factor);
+        if (pyramidFactor > 1)
+        {
+            coarseRuns = new RunLengthImage((width + pyramidFactor - 1) / pyramidFactor,
+                    (height + pyramidFactor - 1) / pyramidFactor, MAX_RUNS);
+        }
+    }
+
+    /**
+     * setStageTimer()
+     *
+     * This method has the engine time its read, coarse search, threshold
+     * and measure stages with timer. Until it is called nothing is timed.
+     *
+     * @param stageTimer what times the stages, such as the LoopProfiler
+     */
+    public void setStageTimer(StageTimer stageTimer)
+    {
+        readStage = stageTimer.addStage("Java read");
+        coarseStage = stageTimer.addStage("Java coarse search");
+        thresholdStage = stageTimer.addStage("Java threshold");
+        measureStage = stageTimer.addStage("Java measure");
+        timer = stageTimer;
+    }
+
+    public boolean processFrame()
+    {
+        particleCount = 0;
+        integralBuilt = false;
+        long start = timer.startStage();
+        if (!source.readFrame(pixels))
+        {
+            return false;
+        }
+        timer.endStage(readStage, start);
+        start = timer.startStage();
+        if (pyramidFactor > 1)
+        {
+            candidateCount = findCandidates();
+            timer.endStage(coarseStage, start);
+            start = timer.startStage();
+        } else
+        {
+            candidateCount = 1;
+            candidateLeft[0] = regionLeft;
+            candidateTop[0] = regionTop;
+            candidateRight[0] = regionRight;
+            candidateBottom[0] = regionBottom;
+        }
+        if (threadCount > 1)
+        {
+            thresholdStrips();
+        } else
+        {
+            runs.clear();
+            threshold(runs, 0, height);
+            runs.finish();
+            runs.label();
+        }
+        timer.endStage(thresholdStage, start);
+        start = timer.startStage();
+        for (int i = 0; i < runs.getRunCount(); i++)
+        {
+            if (runs.isParticle(i))
+            {
+                measureParticle(i);
+            }
+        }
+        timer.endStage(measureStage, start);
+        return true;
+    }
+
+    /**
+     * NoTimer
+     *
+     * This class is the StageTimer the engine starts with. It times nothing.
+     */
+    static class NoTimer implements StageTimer
+    {
+
+        public int addStage(String name)
+        {
+            return 0;
+        }
+
+        public long startStage()
+        {
+            return 0;
+        }
+
+        public void endStage(int stage, long start)
+        {
+        }
+    }
+
+    /**
+     * findCandidates()
+     *
+     * This method searches a subsampled copy of the region of interest for
+     * particles big enough to be targets, and turns each one into a
+     * rectangle for the full resolution pass. Overlapping rectangles are
+     * merged so that no pixel is searched twice.
+     *
+     * @return the number of candidate rectangles
+     */
+    int findCandidates()
+    {
+        int f = pyramidFactor;
+        int left = (regionLeft + f - 1) / f;
+        int top = (regionTop + f - 1) / f;
+        int right = (regionRight + f - 1) / f;
+        int bottom = (regionBottom + f - 1) / f;
+        coarseRuns.clear();
+        for (int cy = top; cy < bottom; cy++)
+        {
+            coarseRuns.startRow(cy);
+            addRuns(coarseRuns, cy * f * width, f, left, right);
+        }
+        coarseRuns.finish();
+        coarseRuns.label();
+
+        int count = 0;
+        for (int i = 0; i < coarseRuns.getRunCount(); i++)
+        {
+            if (!coarseRuns.isParticle(i)
+                    || (coarseRuns.maxX[i] - coarseRuns.minX[i] + 2)
+                    * (coarseRuns.maxY[i] - coarseRuns.minY[i] + 2) * f * f < minArea)
+            {
+                continue;
+            }
+            if (count == candidateLeft.length || coarseRuns.isOverflowed())
+            {
+                // Too much clutter to be worth splitting up
+                candidateLeft[0] = regionLeft;
+                candidateTop[0] = regionTop;
+                candidateRight[0] = regionRight;
+                candidateBottom[0] = regionBottom;
+                return 1;
+            }
+            // Grow by one coarse pixel so edges that fell between samples are
+            // still searched
+            candidateLeft[count] = Math.max(regionLeft, (coarseRuns.minX[i] - 1) * f);
+            candidateTop[count] = Math.max(regionTop, (coarseRuns.minY[i] - 1) * f);
+            candidateRight[count] = Math.min(regionRight, (coarseRuns.maxX[i] + 2) * f);
+            candidateBottom[count] = Math.min(regionBottom, (coarseRuns.maxY[i] + 2) * f);
+            count++;
+        }
+
+        boolean merged = true;
+        while (merged)
+        {
+            merged = false;
+            for (int a = 0; a < count; a++)
+            {
+                for (int b = a + 1; b < count; b++)
+                {
+                    if (candidateLeft[a] < candidateRight[b] && candidateLeft[b] < candidateRight[a]
+                            && candidateTop[a] < candidateBottom[b] && candidateTop[b] < candidateBottom[a])
+                    {
+                        candidateLeft[a] = Math.min(candidateLeft[a], candidateLeft[b]);
+                        candidateTop[a] = Math.min(candidateTop[a], candidateTop[b]);
+                        candidateRight[a] = Math.max(candidateRight[a], candidateRight[b]);
+                        candidateBottom[a] = Math.max(candidateBottom[a], candidateBottom[b]);
+                        count--;
+                        moveCandidate(count, b);
+                        merged = true;
+                        b--;
+                    }
+                }
+            }
+        }
+
+        // The rows are thresholded from left to right, so order the
+        // rectangles the same way
+        for (int a = 1; a < count; a++)
+        {
+            for (int b = a; b > 0 && candidateLeft[b - 1] > candidateLeft[b]; b--)
+            {
+                swapCandidates(b - 1, b);
+            }
+        }
+        return count;
+    }
+
+    void moveCandidate(int from, int to)
+    {
+        candidateLeft[to] = candidateLeft[from];
+        candidateTop[to] = candidateTop[from];
+        candidateRight[to] = candidateRight[from];
+        candidateBottom[to] = candidateBottom[from];
+    }
+
+    void swapCandidates(int a, int b)
+    {
+        int t = candidateLeft[a];
+        candidateLeft[a] = candidateLeft[b];
+        candidateLeft[b] = t;
+        t = candidateTop[a];
+        candidateTop[a] = candidateTop[b];
+        candidateTop[b] = t;
+        t = candidateRight[a];
+        candidateRight[a] = candidateRight[b];
+        candidateRight[b] = t;
+        t = candidateBottom[a];
+        candidateBottom[a] = candidateBottom[b];
+        candidateBottom[b] = t;
+    }
+
+    /**
+     * threshold()
+     *
+     * This method thresholds the candidate rectangles, which must not
+     * overlap and must be ordered from left to right, into image. Only rows
+     * top up to bottom are done, and everything outside the rectangles is
+     * left empty.
+     */
+    void threshold(RunLengthImage image, int top, int bottom)
+    {
+        int first = bottom;
+        int last = top;
+        for (int c = 0; c < candidateCount; c++)
+        {
+            first = Math.min(first, candidateTop[c]);
+            last = Math.max(last, candidateBottom[c]);
+        }
+        first = Math.max(first, top);
+        last = Math.min(last, bottom);
+        for (int y = first; y < last; y++)
+        {
+            image.startRow(y);
+            for (int c = 0; c < candidateCount; c++)
+            {
+                if (candidateTop[c] <= y && y < candidateBottom[c])
+                {
+                    addRuns(image, y * width, 1, candidateLeft[c], candidateRight[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * thresholdStrips()
+     *
+     * This method splits the rows the candidates cover into one strip per
+     * thread, has every strip thresholded and labeled at the same time, and
+     * then puts the strips back together in the run length image and joins
+     * the particles that cross the seams.
+     */
+    void thresholdStrips()
+    {
+        int top = height;
+        int bottom = 0;
+        for (int c = 0; c < candidateCount; c++)
+        {
+            top = Math.min(top, candidateTop[c]);
+            bottom = Math.max(bottom, candidateBottom[c]);
+        }
+        bottom = Math.max(top, bottom);
+        for (int i = 0; i < threadCount; i++)
+        {
+            stripTop[i] = top + (bottom - top) * i / threadCount;
+            stripBottom[i] = top + (bottom - top) * (i + 1) / threadCount;
+        }
+
+        synchronized (stripLock)
+        {
+            stripsPending = threadCount - 1;
+            stripGeneration++;
+            stripLock.notifyAll();
+        }
+        labelStrip(0);
+        synchronized (stripLock)
+        {
+            while (running && stripsPending > 0)
+            {
+                try
+                {
+                    stripLock.wait();
+                } catch (InterruptedException e)
+                {
+                }
+            }
+        }
+
+        runs.clear();
+        for (int i = 0; i < threadCount; i++)
+        {
+            runs.append(strips[i], stripTop[i], stripBottom[i]);
+        }
+        runs.finish();
+        for (int i = 1; i < threadCount; i++)
+        {
+            if (stripTop[i] > 0 && stripTop[i] < stripBottom[i])
+            {
+                runs.joinRows(stripTop[i], stripTop[i] + 1);
+            }
+        }
+        runs.findParticles();
+    }
+
+    /**
+     * labelStrip()
+     *
+     * This method thresholds and labels one strip of the frame in its own
+     * run length image.
+     */
+    void labelStrip(int i)
+    {
+        RunLengthImage strip = strips[i];
+        strip.clear();
+        strip.startRow(stripTop[i]);
+        threshold(strip, stripTop[i], stripBottom[i]);
+        strip.startRow(stripBottom[i]);
+        strip.resetLabels();
+        strip.joinRows(stripTop[i] + 1, stripBottom[i]);
+    }
+
+    /**
+     * StripWorker
+     *
+     * This class is the body of a thread that labels one strip of every
+     * frame. It waits for processFrame() to hand out the strips, labels its
+     * own and reports back.
+     */
+    class StripWorker implements Runnable
+    {
+
+        int strip;
+
+        StripWorker(int strip)
+        {
+            this.strip = strip;
+        }
+
+        public void run()
+        {
+            int generation = 0;
+            while (true)
+            {
+                synchronized (stripLock)
+                {
+                    while (running && stripGeneration == generation)
+                    {
+                        try
+                        {
+                            stripLock.wait();
+                        } catch (InterruptedException e)
+                        {
+                        }
+                    }
+                    if (!running)
+                    {
+                        return;
+                    }
+                    generation = stripGeneration;
+                }
+                labelStrip(strip);
+                synchronized (stripLock)
+                {
+                    stripsPending--;
+                    stripLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * addRuns()
+     *
+     * This method thresholds part of one row of the frame and adds the runs
+     * it finds to image.
+     *
+     * @param row the index of the first pixel of the row in the frame
+     * @param step how many frame pixels apart the image's pixels are
+     * @param left the first image pixel to threshold
+     * @param right one past the last image pixel to threshold
+     */
+    void addRuns(RunLengthImage image, int row, int step, int left, int right)
+    {
+        int start = -1;
+        for (int x = left; x < right; x++)
+        {
+            if (colors.contains(pixels[row + x * step]))
+            {
+                if (start < 0)
+                {
+                    start = x;
+                }
+            } else if (start >= 0)
+            {
+                image.addRun(start, x - 1);
+                start = -1;
+            }
+        }
+        if (start >= 0)
+        {
+            image.addRun(start, right - 1);
+        }
+    }
+
+    /**
+     * measureParticle()
+     *
+     * This method fills the particle with root run l to its convex hull,
+     * measures the filled particle and keeps it if it passes the area filter.
+     */
+    void measureParticle(int l)
+    {
+        int top = runs.minY[l];
+        int left = runs.minX[l];
+        int right = runs.maxX[l];
+        int rows = runs.maxY[l] - top + 1;
+        if (runs.area[l] > maxArea || (right - left + 1) * rows < minArea)
+        {
+            // The hull can only be larger than the particle and smaller than
+            // its bounding rectangle.
+            return;
+        }
+
+        runs.getParticleExtents(l, rowLeft, rowRight);
+
+        int leftCount = buildChain(rowLeft, rows, leftChain, true);
+        int rightCount = buildChain(rowRight, rows, rightChain, false);
+
+        long area = 0;
+        long sumX2 = 0;
+        long sumY = 0;
+        int leftSegment = 0;
+        int rightSegment = 0;
+        for (int r = 0; r < rows; r++)
+        {
+            while (leftSegment < leftCount - 2 && leftChain[leftSegment + 1] < r)
+            {
+                leftSegment++;
+            }
+            while (rightSegment < rightCount - 2 && rightChain[rightSegment + 1] < r)
+            {
+                rightSegment++;
+            }
+            int start = edgeAt(rowLeft, leftChain, leftCount, leftSegment, r, true);
+            int end = edgeAt(rowRight, rightChain, rightCount, rightSegment, r, false);
+            long length = end - start + 1;
+            area += length;
+            sumX2 += (start + end) * length;
+            sumY += (top + r) * length;
+        }
+
+        if (area < minArea || area > maxArea)
+        {
+            return;
+        }
+
+        // The hull runs through pixel centers, growing it by half a pixel all
+        // around adds exactly 4 to its perimeter.
+        double perimeter = 4.0 + (rowRight[0] - rowLeft[0])
+                + (rowRight[rows - 1] - rowLeft[rows - 1])
+                + chainLength(rowLeft, leftChain, leftCount)
+                + chainLength(rowRight, rightChain, rightCount);
+        double root = perimeter * perimeter - 16.0 * area;
+        root = root > 0.0 ? Math.sqrt(root) : 0.0;
+
+        int slot = insertParticle(area);
+        if (slot < 0)
+        {
+            return;
+        }
+        ParticleReport p = particles[slot];
+        p.imageWidth = width;
+        p.imageHeight = height;
+        p.particleArea = area;
+        p.center_mass_x = (int) (sumX2 / (2 * area));
+        p.center_mass_y = (int) (sumY / area);
+        p.center_mass_x_normalized = (2.0 * p.center_mass_x / width) - 1.0;
+        p.center_mass_y_normalized = (2.0 * p.center_mass_y / height) - 1.0;
+        p.boundingRectLeft = left;
+        p.boundingRectTop = top;
+        p.boundingRectWidth = right - left + 1;
+        p.boundingRectHeight = rows;
+        p.particleToImagePercent = 100.0 * area / (width * height);
+        rectLong[slot] = (perimeter + root) / 4.0;
+        rectShort[slot] = (perimeter - root) / 4.0;
+    }
+
+    /**
+     * buildChain()
+     *
+     * This method finds the rows whose end points lie on the convex hull,
+     * using the monotone chain algorithm on the points (row, x[row]).
+     *
+     * @param left true to build the left side of the hull, false for the right
+     * @return the number of rows written to chain
+     */
+    int buildChain(int[] x, int rows, int[] chain, boolean left)
+    {
+        int count = 0;
+        for (int r = 0; r < rows; r++)
+        {
+            while (count >= 2)
+            {
+                int o = chain[count - 2];
+                int a = chain[count - 1];
+                long cross = (long) (a - o) * (x[r] - x[o]) - (long) (x[a] - x[o]) * (r - o);
+                if ((left && cross <= 0) || (!left && cross >= 0))
+                {
+                    count--;
+                } else
+                {
+                    break;
+                }
+            }
+            chain[count++] = r;
+        }
+        return count;
+    }
+
+    /**
+     * edgeAt()
+     *
+     * This method returns the first (left) or last (right) pixel of a row
+     * that lies inside the hull side described by chain.
+     */
+    int edgeAt(int[] x, int[] chain, int count, int segment, int r, boolean left)
+    {
+        if (count == 1)
+        {
+            return x[chain[0]];
+        }
+        int r0 = chain[segment];
+        int r1 = chain[segment + 1];
+        long span = r1 - r0;
+        long numerator = x[r0] * span + (long) (x[r1] - x[r0]) * (r - r0);
+        if (left)
+        {
+            return (int) ((numerator + span - 1) / span);
+        }
+        return (int) (numerator / span);
+    }
+
+    double chainLength(int[] x, int[] chain, int count)
+    {
+        double length = 0.0;
+        for (int i = 1; i < count; i++)
+        {
+            double dr = chain[i] - chain[i - 1];
+            double dx = x[chain[i]] - x[chain[i - 1]];
+            length += Math.sqrt(dr * dr + dx * dx);
+        }
+        return length;
+    }
+
+    /**
+     * insertParticle()
+     *
+     * This method makes room for a particle in the reports, which are kept
+     * ordered from the largest area to the smallest.
+     *
+     * @return the slot the particle goes into, or -1 if the reports are full
+     * of larger particles
+     */
+    int insertParticle(long area)
+    {
+        int slot = particleCount;
+        if (particleCount == particles.length)
+        {
+            if (particleCount == 0 || particles[particleCount - 1].particleArea >= area)
+            {
+                return -1;
+            }
+            slot--;
+        } else
+        {
+            particleCount++;
+        }
+        ParticleReport free = particles[slot];
+        while (slot > 0 && particles[slot - 1].particleArea < area)
+        {
+            particles[slot] = particles[slot - 1];
+            rectLong[slot] = rectLong[slot - 1];
+            rectShort[slot] = rectShort[slot - 1];
+            slot--;
+        }
+        particles[slot] = free;
+        return slot;
+    }
+
+    public boolean isFrameAvailable()
+    {
+        return true;
+    }
+
+    public double getFrameTimestamp()
+    {
+        return source.getFrameTimestamp();
+    }
+
+    public int getParticleCount()
+    {
+        return particleCount;
+    }
+
+    public ParticleReport getParticle(int particleNumber)
+    {
+        return particles[particleNumber];
+    }
+
+    public double getEquivalentRectLongSide(int particleNumber)
+    {
+        return rectLong[particleNumber];
+    }
+
+    public double getEquivalentRectShortSide(int particleNumber)
+    {
+        return rectShort[particleNumber];
+    }
+
+    public int getColumnAverages(int particleNumber, float[] averages)
+    {
+        ParticleReport p = particles[particleNumber];
+        buildIntegral();
+        return integral.getColumnAverages(p.boundingRectLeft, p.boundingRectTop,
+                p.boundingRectWidth, p.boundingRectHeight, averages);
+    }
+
+    public int getRowAverages(int particleNumber, float[] averages)
+    {
+        ParticleReport p = particles[particleNumber];
+        buildIntegral();
+        return integral.getRowAverages(p.boundingRectLeft, p.boundingRectTop,
+                p.boundingRectWidth, p.boundingRectHeight, averages);
+    }
+
+    /**
+     * buildIntegral()
+     *
+     * This method builds the summed-area table the first time the averages
+     * of a frame are asked for. It only covers the rectangle around the
+     * reported particles, since no other part of the frame gets scored.
+     */
+    void buildIntegral()
+    {
+        if (integralBuilt)
+        {
+            return;
+        }
+        int left = width;
+        int top = height;
+        int right = 0;
+        int bottom = 0;
+        for (int i = 0; i < particleCount; i++)
+        {
+            ParticleReport p = particles[i];
+            left = Math.min(left, p.boundingRectLeft);
+            top = Math.min(top, p.boundingRectTop);
+            right = Math.max(right, p.boundingRectLeft + p.boundingRectWidth);
+            bottom = Math.max(bottom, p.boundingRectTop + p.boundingRectHeight);
+        }
+        if (right > left && bottom > top)
+        {
+            integral.build(runs, left, top, right - left, bottom - top);
+        }
+        integralBuilt = true;
+    }
+
+    public void releaseFrame()
+    {
+        particleCount = 0;
+        integralBuilt = false;
+    }
+
+    /**
+     * free()
+     *
+     * This method stops the strip worker threads. The engine must not be
+     * used after this.
+     */
+    public void free()
+    {
+        releaseFrame();
+        synchronized (stripLock)
+        {
+            running = false;
+            stripLock.notifyAll();
+        }
+    }
+}
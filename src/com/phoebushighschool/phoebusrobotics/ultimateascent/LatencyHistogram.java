@@ -0,0 +1,178 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * LatencyHistogram
+ *
+ * This class counts how long something took, in microseconds, into fixed
+ * buckets, so recording never allocates. Below 4 us every microsecond has a
+ * bucket; above that each doubling is split into four buckets, so a
+ * percentile read back is within 25% of the real value. It also keeps the
+ * count, mean and maximum, and how many times the budget was overrun.
+ */
+public class LatencyHistogram
+{
+
+    static final int SUB_BUCKETS = 4;
+    static final int BUCKETS = 120;
+    String name;
+    long budget;
+    int[] counts = new int[BUCKETS];
+    int count = 0;
+    int overruns = 0;
+    long max = 0;
+    long total = 0;
+
+    /**
+     * LatencyHistogram
+     *
+     * @param name what is being timed
+     * @param budget the most microseconds it should take, or 0 for no limit
+     */
+    public LatencyHistogram(String name, long budget)
+    {
+        this.name = name;
+        this.budget = budget;
+    }
+
+    /**
+     * record()
+     *
+     * This method adds one time.
+     *
+     * @param micros how long it took in microseconds
+     */
+    public synchronized void record(long micros)
+    {
+        if (micros < 0)
+        {
+            micros = 0;
+        }
+        counts[getBucket(micros)]++;
+        count++;
+        total += micros;
+        if (micros > max)
+        {
+            max = micros;
+        }
+        if (budget > 0 && micros > budget)
+        {
+            overruns++;
+        }
+    }
+
+    static int getBucket(long micros)
+    {
+        if (micros > Integer.MAX_VALUE)
+        {
+            micros = Integer.MAX_VALUE;
+        }
+        if (micros < SUB_BUCKETS)
+        {
+            return (int) micros;
+        }
+        // The highest bit set picks the doubling, the next two the quarter
+        int bit = 0;
+        for (long x = micros; x >= 2; x >>= 1)
+        {
+            bit++;
+        }
+        return (bit - 1) * SUB_BUCKETS + (int) ((micros >> (bit - 2)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * getBucketLowest()
+     *
+     * @param bucket a bucket number
+     * @return long - the shortest time in microseconds that goes in the bucket
+     */
+    static long getBucketLowest(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int bit = bucket / SUB_BUCKETS + 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (bit - 2);
+    }
+
+    /**
+     * getPercentile()
+     *
+     * @param fraction which percentile, 0.5 for the median, 0.99 for the 99th
+     * @return long - the time in microseconds that this fraction of the
+     * records took no longer than, rounded up to the end of its bucket
+     */
+    public synchronized long getPercentile(double fraction)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long wanted = (long) Math.ceil(fraction * count);
+        if (wanted < 1)
+        {
+            wanted = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= wanted)
+            {
+                return Math.min(getBucketLowest(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * getOverruns()
+     *
+     * @return int - how many records were over the budget
+     */
+    public synchronized int getOverruns()
+    {
+        return overruns;
+    }
+
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    public synchronized double getMean()
+    {
+        if (count == 0)
+        {
+            return 0.0;
+        }
+        return (double) total / count;
+    }
+
+    public synchronized void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = 0;
+        }
+        count = 0;
+        overruns = 0;
+        max = 0;
+        total = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.Timer;
+import java.io.IOException;
+import java.io.PrintStream;
+import javax.microedition.io.Connector;
+import javax.microedition.io.file.FileConnection;
+
+/**
+ * LoopProfiler
+ *
+ * This class times the segments of the control loop and the vision
+ * pipeline. Each segment is added once, which gives it a LatencyHistogram,
+ * and is then timed with
+ *
+ *     long start = LoopProfiler.start();
+ *     ...
+ *     profiler.end(segment, start);
+ *
+ * which does not allocate. The results can be read back, put on the
+ * dashboard, or written to a file at the end of a match.
+ *
+ * It is also the StageTimer handed to code that cannot use WPILib itself,
+ * so those stages end up in the same results.
+ */
+public class LoopProfiler implements StageTimer
+{
+
+    public static final int MAX_SEGMENTS = 32;
+    static LoopProfiler instance = null;
+    LatencyHistogram[] segments = new LatencyHistogram[MAX_SEGMENTS];
+    volatile int segmentCount = 0;
+
+    /**
+     * getInstance()
+     *
+     * @return LoopProfiler - the robot's one profiler
+     */
+    public static synchronized LoopProfiler getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new LoopProfiler();
+        }
+        return instance;
+    }
+
+    /**
+     * addSegment()
+     *
+     * This method adds a segment to time. Adding a name that is already
+     * there returns the segment already added, so something built more than
+     * once keeps one set of results.
+     *
+     * @param name what the segment is called in the results
+     * @param budget the most seconds the segment should take, or 0.0 for no
+     * limit. Times over it are counted as overruns.
+     * @return int - the segment to pass to end()
+     */
+    public synchronized int addSegment(String name, double budget)
+    {
+        for (int i = 0; i < segmentCount; i++)
+        {
+            if (segments[i].getName().equals(name))
+            {
+                return i;
+            }
+        }
+        int segment = segmentCount;
+        if (segment == MAX_SEGMENTS)
+        {
+            throw new RuntimeException("Too many segments in the LoopProfiler");
+        }
+        segments[segment] = new LatencyHistogram(name, (long) (budget * 1000000.0));
+        segmentCount = segment + 1;
+        return segment;
+    }
+
+    /**
+     * start()
+     *
+     * @return long - the time to pass to end(), in microseconds
+     */
+    public static long start()
+    {
+        return Timer.getUsClock();
+    }
+
+    /**
+     * end()
+     *
+     * This method records the time since start() against a segment.
+     *
+     * @param segment the segment addSegment() returned
+     * @param start what start() returned
+     */
+    public void end(int segment, long start)
+    {
+        long elapsed = Timer.getUsClock() - start;
+        if (elapsed < 0)
+        {
+            // The FPGA's microsecond clock is 32 bits and wraps
+            elapsed += 1L << 32;
+        }
+        segments[segment].record(elapsed);
+    }
+
+    public int addStage(String name)
+    {
+        return addSegment(name, 0.0);
+    }
+
+    public long startStage()
+    {
+        return start();
+    }
+
+    public void endStage(int stage, long start)
+    {
+        end(stage, start);
+    }
+
+    public int getSegmentCount()
+    {
+        return segmentCount;
+    }
+
+    public LatencyHistogram getSegment(int segment)
+    {
+        return segments[segment];
+    }
+
+    public void reset()
+    {
+        int count = segmentCount;
+        for (int i = 0; i < count; i++)
+        {
+            segments[i].reset();
+        }
+    }
+
+    /**
+     * writeToFile()
+     *
+     * This method writes a line for each segment to a file, replacing what
+     * was in it: the count, the 50th and 99th percentile, the maximum and the
+     * mean in microseconds, and the overruns.
+     *
+     * @param path a file URL such as "file:///profile.txt"
+     */
+    public void writeToFile(String path)
+    {
+        FileConnection file = null;
+        try
+        {
+            file = (FileConnection) Connector.open(path, Connector.READ_WRITE);
+            if (file.exists())
+            {
+                file.truncate(0);
+            } else
+            {
+                file.create();
+            }
+            PrintStream out = new PrintStream(file.openOutputStream());
+            out.println("segment\tcount\tp50\tp99\tmax\tmean\toverruns");
+            int count = segmentCount;
+            for (int i = 0; i < count; i++)
+            {
+                LatencyHistogram h = segments[i];
+                out.println(h.getName() + "\t" + h.getCount()
+                        + "\t" + h.getPercentile(0.5) + "\t" + h.getPercentile(0.99)
+                        + "\t" + h.getMax() + "\t" + (long) h.getMean()
+                        + "\t" + h.getOverruns());
+            }
+            out.close();
+        } catch (IOException e)
+        {
+            System.out.println("Could not write loop profile: " + e);
+        } finally
+        {
+            if (file != null)
+            {
+                try
+                {
+                    file.close();
+                } catch (IOException e)
+                {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.camera.*;
+import edu.wpi.first.wpilibj.image.*;
+
+/**
+ * NIVisionEngine
+ *
+ * This class runs the particle pipeline through the NIVision library on the
+ * cRIO. It advances one stage per call to processFrame() so that no single
+ * control loop iteration has to wait for the whole frame.
+ *
+ * The binary images the stages write are kept in an ImagePool when a frame
+ * is released, and the next frame's stages write into them instead of
+ * making new ones. Only the camera image is still made and freed per frame.
+ */
+public class NIVisionEngine implements VisionEngine
+{
+
+    int imageState = 0;
+    double frameTimestamp = 0.0;
+    AxisCamera camera;
+    CriteriaCollection cc;
+    ColorImage image;
+    BinaryImage thresholdImage;
+    BinaryImage convexHullImage;
+    BinaryImage filteredImage;
+    ParticleAnalysisReport[] reports = null;
+    ParticleReport[] particles = new ParticleReport[0];
+    boolean hsv = false;
+    int low1, high1, low2, high2, low3, high3;
+    NIVision.Range range1 = null;
+    NIVision.Range range2 = null;
+    NIVision.Range range3 = null;
+    ImagePool pool = new ImagePool(6);
+    static final String[] STAGE_NAMES = {"NI capture", "NI threshold",
+        "NI convex hull", "NI particle filter", "NI reports"};
+    LoopProfiler profiler = LoopProfiler.getInstance();
+    int[] stageSegments = new int[STAGE_NAMES.length];
+
+    /**
+     * NIVisionEngine
+     *
+     * @param axisCamera the camera the frames are taken from, already
+     * configured for resolution and exposure
+     */
+    public NIVisionEngine(AxisCamera axisCamera)
+    {
+        camera = axisCamera;
+        cc = new CriteriaCollection();
+        for (int i = 0; i < STAGE_NAMES.length; i++)
+        {
+            stageSegments[i] = profiler.addSegment(STAGE_NAMES[i], 0.0);
+        }
+    }
+
+    public void setThresholdRGB(int redLow, int redHigh, int greenLow,
+            int greenHigh, int blueLow, int blueHigh)
+    {
+        setThreshold(false, redLow, redHigh, greenLow, greenHigh, blueLow, blueHigh);
+    }
+
+    public void setThresholdHSV(int hueLow, int hueHigh, int saturationLow,
+            int saturationHigh, int valueLow, int valueHigh)
+    {
+        setThreshold(true, hueLow, hueHigh, saturationLow, saturationHigh, valueLow, valueHigh);
+    }
+
+    void setThreshold(boolean hsv, int low1, int high1, int low2, int high2,
+            int low3, int high3)
+    {
+        this.hsv = hsv;
+        this.low1 = low1;
+        this.high1 = high1;
+        this.low2 = low2;
+        this.high2 = high2;
+        this.low3 = low3;
+        this.high3 = high3;
+        freeRanges();
+    }
+
+    void freeRanges()
+    {
+        if (range1 != null)
+        {
+            range1.free();
+            range2.free();
+            range3.free();
+        }
+        range1 = null;
+        range2 = null;
+        range3 = null;
+    }
+
+    public void setParticleAreaRange(int minArea, int maxArea)
+    {
+        cc = new CriteriaCollection();
+        cc.addCriteria(NIVision.MeasurementType.IMAQ_MT_AREA, minArea, maxArea, false);
+    }
+
+    /**
+     * setRegionOfInterest()
+     *
+     * The NIVision threshold always runs on the whole image, so this engine
+     * ignores the window.
+     */
+    public void setRegionOfInterest(int left, int top, int width, int height)
+    {
+    }
+
+    public void clearRegionOfInterest()
+    {
+    }
+
+    /**
+     * setPyramidFactor()
+     *
+     * The camera image is handed to NIVision at full resolution, so this
+     * engine ignores the factor.
+     */
+    public void setPyramidFactor(int factor)
+    {
+    }
+
+    public boolean processFrame()
+    {
+        int stage = imageState;
+        long start = LoopProfiler.start();
+        try
+        {
+            switch (imageState)
+            {
+                case 0:
+                    releaseFrame();
+                    image = camera.getImage();
+                    frameTimestamp = Timer.getFPGATimestamp() - Parameters.CAMERA_LATENCY;
+                    imageState++;
+                    break;
+                case 1:
+                    thresholdImage = pool.take(image.getWidth(), image.getHeight());
+                    if (thresholdImage != null)
+                    {
+                        if (range1 == null)
+                        {
+                            range1 = new NIVision.Range(low1, high1);
+                            range2 = new NIVision.Range(low2, high2);
+                            range3 = new NIVision.Range(low3, high3);
+                        }
+                        NIVision.colorThreshold(thresholdImage.image, image.image,
+                                hsv ? NIVision.ColorMode.IMAQ_HSV : NIVision.ColorMode.IMAQ_RGB,
+                                range1.getPointer(), range2.getPointer(), range3.getPointer());
+                    } else if (hsv)
+                    {
+                        thresholdImage = image.thresholdHSV(low1, high1, low2, high2, low3, high3);
+                    } else
+                    {
+                        thresholdImage = image.thresholdRGB(low1, high1, low2, high2, low3, high3);
+                    }
+                    imageState++;
+                    break;
+                case 2:
+                    convexHullImage = pool.take(thresholdImage.getWidth(), thresholdImage.getHeight());
+                    if (convexHullImage != null)
+                    {
+                        NIVision.convexHull(convexHullImage.image, thresholdImage.image, 1);
+                    } else
+                    {
+                        convexHullImage = thresholdImage.convexHull(true);
+                    }
+                    imageState++;
+                    break;
+                case 3:
+                    filteredImage = pool.take(convexHullImage.getWidth(), convexHullImage.getHeight());
+                    if (filteredImage != null)
+                    {
+                        NIVision.particleFilter(filteredImage.image, convexHullImage.image, cc);
+                    } else
+                    {
+                        filteredImage = convexHullImage.particleFilter(cc);
+                    }
+                    imageState++;
+                    break;
+                case 4:
+                    reports = filteredImage.getOrderedParticleAnalysisReports();
+                    imageState = 0;
+                    return true;
+            }
+        } catch (NIVisionException e)
+        {
+            imageState = 0;
+        } catch (AxisCameraException e)
+        {
+            imageState = 0;
+        } finally
+        {
+            profiler.end(stageSegments[stage], start);
+        }
+        return false;
+    }
+
+    public boolean isFrameAvailable()
+    {
+        return imageState != 0 || camera.freshImage();
+    }
+
+    public double getFrameTimestamp()
+    {
+        return frameTimestamp;
+    }
+
+    public int getParticleCount()
+    {
+        if (reports == null)
+        {
+            return 0;
+        }
+        return reports.length;
+    }
+
+    public ParticleReport getParticle(int particleNumber)
+    {
+        if (particles.length < reports.length)
+        {
+            particles = new ParticleReport[reports.length];
+            for (int i = 0; i < particles.length; i++)
+            {
+                particles[i] = new ParticleReport();
+            }
+        }
+        ParticleAnalysisReport r = reports[particleNumber];
+        ParticleReport p = particles[particleNumber];
+        p.imageWidth = r.imageWidth;
+        p.imageHeight = r.imageHeight;
+        p.center_mass_x = r.center_mass_x;
+        p.center_mass_y = r.center_mass_y;
+        p.center_mass_x_normalized = r.center_mass_x_normalized;
+        p.center_mass_y_normalized = r.center_mass_y_normalized;
+        p.particleArea = r.particleArea;
+        p.boundingRectLeft = r.boundingRectLeft;
+        p.boundingRectTop = r.boundingRectTop;
+        p.boundingRectWidth = r.boundingRectWidth;
+        p.boundingRectHeight = r.boundingRectHeight;
+        p.particleToImagePercent = r.particleToImagePercent;
+        return p;
+    }
+
+    public double getEquivalentRectLongSide(int particleNumber)
+    {
+        return measureParticle(particleNumber, NIVision.MeasurementType.IMAQ_MT_EQUIVALENT_RECT_LONG_SIDE);
+    }
+
+    public double getEquivalentRectShortSide(int particleNumber)
+    {
+        return measureParticle(particleNumber, NIVision.MeasurementType.IMAQ_MT_EQUIVALENT_RECT_SHORT_SIDE);
+    }
+
+    double measureParticle(int particleNumber, NIVision.MeasurementType type)
+    {
+        try
+        {
+            return NIVision.MeasureParticle(filteredImage.image, particleNumber, false, type);
+        } catch (NIVisionException e)
+        {
+            return 0.0;
+        }
+    }
+
+    public int getColumnAverages(int particleNumber, float[] averages)
+    {
+        try
+        {
+            LinearAverages linearAverages = NIVision.getLinearAverages(thresholdImage.image,
+                    LinearAverages.LinearAveragesMode.IMAQ_COLUMN_AVERAGES, getRect(particleNumber));
+            return copyAverages(linearAverages.getColumnAverages(), averages);
+        } catch (NIVisionException e)
+        {
+            return 0;
+        }
+    }
+
+    public int getRowAverages(int particleNumber, float[] averages)
+    {
+        try
+        {
+            LinearAverages linearAverages = NIVision.getLinearAverages(thresholdImage.image,
+                    LinearAverages.LinearAveragesMode.IMAQ_ROW_AVERAGES, getRect(particleNumber));
+            return copyAverages(linearAverages.getRowAverages(), averages);
+        } catch (NIVisionException e)
+        {
+            return 0;
+        }
+    }
+
+    NIVision.Rect getRect(int particleNumber)
+    {
+        ParticleAnalysisReport r = reports[particleNumber];
+        return new NIVision.Rect(r.boundingRectTop, r.boundingRectLeft, r.boundingRectHeight, r.boundingRectWidth);
+    }
+
+    int copyAverages(float[] source, float[] averages)
+    {
+        int length = Math.min(source.length, averages.length);
+        System.arraycopy(source, 0, averages, 0, length);
+        return length;
+    }
+
+    /**
+     * releaseFrame()
+     *
+     * This method frees the camera image and puts the binary images back in
+     * the pool for the next frame.
+     */
+    public void releaseFrame()
+    {
+        try
+        {
+            if (image != null)
+            {
+                image.free();
+            }
+        } catch (NIVisionException e)
+        {
+        }
+        pool.give(thresholdImage);
+        pool.give(convexHullImage);
+        pool.give(filteredImage);
+        image = null;
+        thresholdImage = null;
+        convexHullImage = null;
+        filteredImage = null;
+        reports = null;
+        imageState = 0;
+    }
+
+    /**
+     * free()
+     *
+     * This method frees everything the engine holds, including the pooled
+     * images. The engine must not be used after this.
+     */
+    public void free()
+    {
+        releaseFrame();
+        pool.free();
+        freeRanges();
+    }
+}
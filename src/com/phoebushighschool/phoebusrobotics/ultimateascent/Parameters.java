@@ -51,6 +51,95 @@ public class Parameters {
 
   public static final double TIMER_DELAY = 0.1;
 
+  // The autonomous loop runs at a fixed rate, this many seconds apart, and
+  // this is what it does when an iteration runs long
+  public static final double CONTROL_LOOP_PERIOD = 0.02;
+  public static final FixedRateLoop.OverrunPolicy CONTROL_LOOP_OVERRUN_POLICY = FixedRateLoop.OverrunPolicy.kSkip;
+
+  // How often each teleop task runs, in seconds
+  public static final double SENSOR_TASK_PERIOD = 0.01;
+  public static final double DRIVE_TASK_PERIOD = 0.01;
+  public static final double GAME_MECH_TASK_PERIOD = 0.02;
+  public static final double CLIMBER_TASK_PERIOD = 0.02;
+  public static final double DASHBOARD_TASK_PERIOD = 0.2;
+
+  // Where the LoopProfiler's results are written at the end of each mode
+  public static final String PROFILE_FILE = "file:///profile.txt";
+
+  // How long the vision thread sleeps while waiting for a new camera frame
+  public static final long VISION_IDLE_DELAY_MS = 5;
+
+  // Only search a window around a locked target instead of the whole frame
+  public static boolean VISION_ROI_TRACKING = true;
+
+  // Search frames at 1/n resolution first, then only the candidates at full
+  // resolution. 1 turns the coarse search off.
+  public static int VISION_PYRAMID_FACTOR = 2;
+
+  // Find targets with the hue/saturation/value threshold instead of the RGB
+  // one
+  public static boolean VISION_HSV_THRESHOLD = false;
+
+  // Which engine finds the particles: the NIVision library on the Axis
+  // camera's images, or the pure Java pipeline on raw RGB frames read from
+  // VISION_FRAME_URL (a file:/// of saved frames, or a socket:// to a
+  // coprocessor), split into VISION_THREADS strips
+  public static final int VISION_ENGINE_NI = 0;
+  public static final int VISION_ENGINE_JAVA = 1;
+  public static int VISION_ENGINE = VISION_ENGINE_NI;
+  public static String VISION_FRAME_URL = "file:///frames.rgb";
+  public static int VISION_THREADS = 1;
+
+  // Camera calibration: focal length and optical center in pixels, and the
+  // radial lens distortion. The focal length defaults to the Axis camera's
+  // 48 degree field of view across 640 pixels, 320 / tan(24 degrees).
+  public static double CAMERA_FOCAL_LENGTH = 718.73;
+  public static double CAMERA_CENTER_X = 320.0;
+  public static double CAMERA_K1 = 0.0;
+  public static double CAMERA_K2 = 0.0;
+
+  // The ultrasonic sensor is read on its own thread this often, and the
+  // median of this many readings is its distance
+  public static final long ULTRASONIC_SAMPLE_PERIOD_MS = 10;
+  public static final int ULTRASONIC_SAMPLES = 9;
+
+  // How often the EdgeMonitor reads the inputs it watches
+  public static final long EDGE_POLL_PERIOD_MS = 1;
+
+  // How far the camera's frames lag behind what it sees, in seconds. Frames
+  // are stamped this much earlier than when they are read.
+  public static double CAMERA_LATENCY = 0.0;
+
+  // How often the gyro angle history is sampled, and how far back the turn
+  // rate is measured over
+  public static final long GYRO_SAMPLE_PERIOD_MS = 5;
+  public static final double GYRO_RATE_WINDOW = 0.05;
+
+  // Gyro calibration. The saved calibration is checked for this long at
+  // startup, and the full calibration is only run if the rate it measures is
+  // off by more than the tolerance, in degrees per second.
+  public static final String GYRO_CALIBRATION_FILE = "file:///gyro.cal";
+  public static final double GYRO_SETTLE_TIME = 1.0;
+  public static final double GYRO_CALIBRATION_TIME = 5.0;
+  public static final double GYRO_VALIDATION_TIME = 0.5;
+  public static final double GYRO_CALIBRATION_TOLERANCE = 0.2;
+
+  // While disabled the drift is measured over windows this long. Windows
+  // turning faster than the stationary rate are the robot being moved and
+  // are ignored. The saved drift is rewritten at most every save period.
+  public static final double GYRO_DRIFT_WINDOW = 2.0;
+  public static final double GYRO_STATIONARY_RATE = 0.5;
+  public static final double GYRO_DRIFT_GAIN = 0.25;
+  public static final double GYRO_SAVE_PERIOD = 30.0;
+
+  // How long the filtered target estimate coasts after the target is last
+  // seen, in seconds
+  public static final double TARGET_COAST_TIME = 0.5;
+
+  // The most particles scored in one frame, largest first. The scoring
+  // arrays are sized to this when the AimingSystem is built.
+  public static final int VISION_MAX_PARTICLES = 16;
+
   public static final double MAX_CAMERA_INPUT = 25.0;
   
   public static final double MIN_CAMERA_INPUT = -25.0;
@@ -66,6 +155,17 @@ public class Parameters {
   public static final double CAMERA_TOLERANCE = 1.0;
   
   public static final double GYRO_TOLERANCE = 20.0;
+
+  // Aim by turning to a gyro heading taken from one vision fix, instead of
+  // steering on the camera directly
+  public static boolean AIM_WITH_GYRO = true;
+
+  // How often turnController runs, in seconds
+  public static final double TURN_CONTROLLER_PERIOD = 0.01;
+
+  // The robot counts as settled when it is turning slower than this, in
+  // degrees per second
+  public static final double AIM_SETTLED_RATE = 5.0;
   
   public static final int discCountInit = 3;
   
@@ -0,0 +1,54 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * ParticleReport
+ *
+ * This class holds the measurements of one particle that scoreParticles()
+ * needs. The fields mirror the NIVision ParticleAnalysisReport so that every
+ * VisionEngine hands the same data to the scoring code. Engines keep their
+ * reports and fill them in again on every frame instead of allocating new
+ * ones.
+ */
+public class ParticleReport
+{
+
+    public int imageWidth;
+    public int imageHeight;
+    public int center_mass_x;
+    public int center_mass_y;
+    public double center_mass_x_normalized;
+    public double center_mass_y_normalized;
+    public double particleArea;
+    public int boundingRectLeft;
+    public int boundingRectTop;
+    public int boundingRectWidth;
+    public int boundingRectHeight;
+    public double particleToImagePercent;
+
+    public ParticleReport()
+    {
+        clear();
+    }
+
+    /**
+     * clear()
+     *
+     * This method resets every measurement to zero so the report can be
+     * reused for another particle.
+     */
+    public void clear()
+    {
+        imageWidth = 0;
+        imageHeight = 0;
+        center_mass_x = 0;
+        center_mass_y = 0;
+        center_mass_x_normalized = 0.0;
+        center_mass_y_normalized = 0.0;
+        particleArea = 0.0;
+        boundingRectLeft = 0;
+        boundingRectTop = 0;
+        boundingRectWidth = 0;
+        boundingRectHeight = 0;
+        particleToImagePercent = 0.0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * PeriodicTask
+ *
+ * This class is one job the TaskScheduler runs over and over at its own
+ * rate, on its own thread, with a FixedRateLoop keeping the time. A slow
+ * task only makes itself late; the others keep their deadlines.
+ */
+public abstract class PeriodicTask implements Runnable
+{
+
+    String name;
+    int priority;
+    FixedRateLoop loop;
+    volatile boolean running = false;
+    LoopProfiler profiler = LoopProfiler.getInstance();
+    int segment;
+
+    /**
+     * PeriodicTask
+     *
+     * @param name what the task is called on the dashboard
+     * @param period the time between runs in seconds
+     * @param priority the priority of the task's thread, Thread.MIN_PRIORITY
+     * to Thread.MAX_PRIORITY
+     */
+    public PeriodicTask(String name, double period, int priority)
+    {
+        this.name = name;
+        this.priority = priority;
+        loop = new FixedRateLoop(period, FixedRateLoop.OverrunPolicy.kSkip);
+        segment = profiler.addSegment(name, period);
+    }
+
+    /**
+     * execute()
+     *
+     * This method does one run of the task.
+     */
+    public abstract void execute();
+
+    public void run()
+    {
+        loop.start();
+        while (running)
+        {
+            long start = LoopProfiler.start();
+            try
+            {
+                execute();
+            }
+            catch (RuntimeException e)
+            {
+                // One bad run should not stop the task for the rest of the match
+                e.printStackTrace();
+            }
+            profiler.end(segment, start);
+            loop.waitForNextTick();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * getSegment()
+     *
+     * @return int - the LoopProfiler segment each run of the task is timed in
+     */
+    public int getSegment()
+    {
+        return segment;
+    }
+
+    /**
+     * getLoop()
+     *
+     * @return FixedRateLoop - the task's loop timer, for its overrun and
+     * jitter counts
+     */
+    public FixedRateLoop getLoop()
+    {
+        return loop;
+    }
+}
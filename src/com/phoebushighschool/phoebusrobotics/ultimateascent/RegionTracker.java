@@ -0,0 +1,114 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * RegionTracker
+ *
+ * This class decides which part of the next camera frame the vision engine
+ * needs to search. Once a target is locked the window is the target's
+ * bounding rectangle plus a margin. If the target is lost the window grows
+ * for a few frames, and after that, or as soon as the target's score drops,
+ * the whole frame is searched again.
+ */
+public class RegionTracker
+{
+
+    final double MARGIN = 0.5;
+    final double GROWTH = 2.0;
+    final int MAX_MISSES = 3;
+    final double LOCK_SCORE = 85.0;
+    final int MIN_SIZE = 64;
+    int imageWidth;
+    int imageHeight;
+    boolean tracking = false;
+    int misses = 0;
+    double centerX;
+    double centerY;
+    double halfWidth;
+    double halfHeight;
+
+    /**
+     * RegionTracker
+     *
+     * @param imageWidth the width of the camera frames in pixels
+     * @param imageHeight the height of the camera frames in pixels
+     */
+    public RegionTracker(int imageWidth, int imageHeight)
+    {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+    }
+
+    /**
+     * update()
+     *
+     * This method moves the window after a frame has been scored.
+     *
+     * @param result the result of the frame, may be null
+     */
+    public void update(TargetResult result)
+    {
+        if (result != null && result.found && result.aspectRatio >= LOCK_SCORE)
+        {
+            tracking = true;
+            misses = 0;
+            halfWidth = Math.max(MIN_SIZE, result.target_width * (1.0 + 2.0 * MARGIN)) / 2.0;
+            halfHeight = Math.max(MIN_SIZE, result.boundingRectHeight * (1.0 + 2.0 * MARGIN)) / 2.0;
+            centerX = result.boundingRectLeft + result.target_width / 2.0;
+            centerY = result.boundingRectTop + result.boundingRectHeight / 2.0;
+        } else if (tracking && (result == null || !result.found) && misses < MAX_MISSES)
+        {
+            misses++;
+            halfWidth *= GROWTH;
+            halfHeight *= GROWTH;
+            if (getWidth() >= imageWidth && getHeight() >= imageHeight)
+            {
+                reset();
+            }
+        } else
+        {
+            reset();
+        }
+    }
+
+    /**
+     * reset()
+     *
+     * This method goes back to searching the whole frame.
+     */
+    public void reset()
+    {
+        tracking = false;
+        misses = 0;
+    }
+
+    /**
+     * isTracking()
+     *
+     * @return true - only the window needs to be searched
+     *         false - the whole frame needs to be searched
+     */
+    public boolean isTracking()
+    {
+        return tracking;
+    }
+
+    public int getLeft()
+    {
+        return Math.max(0, (int) (centerX - halfWidth));
+    }
+
+    public int getTop()
+    {
+        return Math.max(0, (int) (centerY - halfHeight));
+    }
+
+    public int getWidth()
+    {
+        return Math.min(imageWidth, (int) (centerX + halfWidth)) - getLeft();
+    }
+
+    public int getHeight()
+    {
+        return Math.min(imageHeight, (int) (centerY + halfHeight)) - getTop();
+    }
+}
@@ -0,0 +1,366 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * RunLengthImage
+ *
+ * This class is a binary image stored as runs: each run is a horizontal
+ * stretch of set pixels in one row. Target masks are mostly empty, so a
+ * frame's worth of runs takes a few kilobytes instead of a byte or an int
+ * per pixel. Particles are labeled by joining runs that touch runs in the
+ * row above, so the work grows with the number of runs rather than the
+ * number of pixels.
+ *
+ * The image is built a row at a time, from top to bottom, with startRow()
+ * and addRun(), and then closed with finish().
+ */
+public class RunLengthImage
+{
+
+    int width;
+    int height;
+    int[] rowFirst;
+    int[] runStart;
+    int[] runEnd;
+    int[] parent;
+    int runCount = 0;
+    int nextRow = 0;
+    boolean overflow = false;
+    int[] area;
+    int[] minX;
+    int[] maxX;
+    int[] minY;
+    int[] maxY;
+
+    /**
+     * RunLengthImage
+     *
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param maxRuns the most runs one image can hold. Runs past this are
+     * dropped and isOverflowed() reports it.
+     */
+    public RunLengthImage(int width, int height, int maxRuns)
+    {
+        this.width = width;
+        this.height = height;
+        rowFirst = new int[height + 1];
+        runStart = new int[maxRuns];
+        runEnd = new int[maxRuns];
+        parent = new int[maxRuns];
+        area = new int[maxRuns];
+        minX = new int[maxRuns];
+        maxX = new int[maxRuns];
+        minY = new int[maxRuns];
+        maxY = new int[maxRuns];
+    }
+
+    /**
+     * clear()
+     *
+     * This method empties the image so a new one can be built.
+     */
+    public void clear()
+    {
+        runCount = 0;
+        nextRow = 0;
+        overflow = false;
+    }
+
+    /**
+     * startRow()
+     *
+     * This method starts adding runs to row y. Rows must be started from top
+     * to bottom, rows that are skipped stay empty.
+     */
+    public void startRow(int y)
+    {
+        while (nextRow <= y)
+        {
+            rowFirst[nextRow++] = runCount;
+        }
+    }
+
+    /**
+     * addRun()
+     *
+     * This method adds a run of set pixels to the current row. Runs must be
+     * added from left to right. A run that starts right where the last one
+     * ended is joined to it.
+     *
+     * @param start the first set pixel
+     * @param end the last set pixel
+     */
+    public void addRun(int start, int end)
+    {
+        if (runCount > rowFirst[nextRow - 1] && runEnd[runCount - 1] == start - 1)
+        {
+            runEnd[runCount - 1] = end;
+            return;
+        }
+        if (runCount == runStart.length)
+        {
+            overflow = true;
+            return;
+        }
+        runStart[runCount] = start;
+        runEnd[runCount] = end;
+        runCount++;
+    }
+
+    /**
+     * finish()
+     *
+     * This method closes the image after the last row has been added.
+     */
+    public void finish()
+    {
+        startRow(height);
+    }
+
+    /**
+     * isOverflowed()
+     *
+     * @return true if runs were dropped because the image was full
+     */
+    public boolean isOverflowed()
+    {
+        return overflow;
+    }
+
+    public int getRunCount()
+    {
+        return runCount;
+    }
+
+    /**
+     * label()
+     *
+     * This method groups the runs into 8-connected particles. Two runs in
+     * neighbouring rows belong together when they overlap or touch at a
+     * corner. When it returns every run points at the root run of its
+     * particle, and the area and bounding rectangle of each root are filled
+     * in.
+     */
+    public void label()
+    {
+        resetLabels();
+        joinRows(1, height);
+        findParticles();
+    }
+
+    /**
+     * resetLabels()
+     *
+     * This method makes every run a particle of its own.
+     */
+    public void resetLabels()
+    {
+        for (int i = 0; i < runCount; i++)
+        {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * joinRows()
+     *
+     * This method joins the runs of each row from first up to end to the
+     * runs they touch in the row above.
+     *
+     * @param first the first row to join to the row above it, at least 1
+     * @param end one past the last row to join
+     */
+    public void joinRows(int first, int end)
+    {
+        for (int y = first; y < end; y++)
+        {
+            int a = rowFirst[y - 1];
+            int aEnd = rowFirst[y];
+            for (int b = rowFirst[y]; b < rowFirst[y + 1]; b++)
+            {
+                while (a < aEnd && runEnd[a] < runStart[b] - 1)
+                {
+                    a++;
+                }
+                for (int k = a; k < aEnd && runStart[k] <= runEnd[b] + 1; k++)
+                {
+                    union(k, b);
+                }
+            }
+        }
+    }
+
+    /**
+     * findParticles()
+     *
+     * This method points every run straight at the root run of its particle
+     * and fills in the area and bounding rectangle of each root, once all
+     * the rows have been joined.
+     */
+    public void findParticles()
+    {
+        // Roots always have the smaller index, so one ascending pass points
+        // every run straight at its root.
+        for (int i = 0; i < runCount; i++)
+        {
+            parent[i] = parent[parent[i]];
+            if (parent[i] == i)
+            {
+                area[i] = 0;
+                minX[i] = width;
+                maxX[i] = -1;
+                minY[i] = height;
+                maxY[i] = -1;
+            }
+        }
+        for (int y = 0; y < height; y++)
+        {
+            for (int i = rowFirst[y]; i < rowFirst[y + 1]; i++)
+            {
+                int r = parent[i];
+                area[r] += runEnd[i] - runStart[i] + 1;
+                if (runStart[i] < minX[r])
+                {
+                    minX[r] = runStart[i];
+                }
+                if (runEnd[i] > maxX[r])
+                {
+                    maxX[r] = runEnd[i];
+                }
+                if (y < minY[r])
+                {
+                    minY[r] = y;
+                }
+                maxY[r] = y;
+            }
+        }
+    }
+
+    /**
+     * append()
+     *
+     * This method copies rows top up to bottom of strip, labels and all, to
+     * the end of this image. Strips are appended from top to bottom. Because
+     * the runs keep their order the particles come out the same as if the
+     * rows had been built in this image, once the seams between strips are
+     * joined with joinRows().
+     *
+     * @param strip an image holding only the rows from top up to bottom,
+     * labeled with resetLabels() and joinRows()
+     */
+    public void append(RunLengthImage strip, int top, int bottom)
+    {
+        int offset = runCount - strip.rowFirst[top];
+        overflow |= strip.overflow;
+        for (int y = top; y < bottom; y++)
+        {
+            startRow(y);
+            for (int i = strip.rowFirst[y]; i < strip.rowFirst[y + 1]; i++)
+            {
+                if (runCount == runStart.length)
+                {
+                    overflow = true;
+                    return;
+                }
+                runStart[runCount] = strip.runStart[i];
+                runEnd[runCount] = strip.runEnd[i];
+                // Parents always come before their children, so the parent
+                // was copied already
+                parent[runCount] = strip.parent[i] + offset;
+                runCount++;
+            }
+        }
+    }
+
+    void union(int a, int b)
+    {
+        a = find(a);
+        b = find(b);
+        if (a < b)
+        {
+            parent[b] = a;
+        } else if (b < a)
+        {
+            parent[a] = b;
+        }
+    }
+
+    int find(int i)
+    {
+        while (parent[i] != i)
+        {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * isParticle()
+     *
+     * @return true if run i is the root run of a particle
+     */
+    public boolean isParticle(int i)
+    {
+        return parent[i] == i;
+    }
+
+    /**
+     * getParticleExtents()
+     *
+     * This method finds the first and last pixel of a particle in each of its
+     * rows.
+     *
+     * @param root the root run of the particle
+     * @param left gets the first pixel of each row, starting at the top row
+     * @param right gets the last pixel of each row
+     */
+    public void getParticleExtents(int root, int[] left, int[] right)
+    {
+        for (int y = minY[root]; y <= maxY[root]; y++)
+        {
+            int r = y - minY[root];
+            left[r] = width;
+            right[r] = -1;
+            for (int i = rowFirst[y]; i < rowFirst[y + 1]; i++)
+            {
+                if (parent[i] == root)
+                {
+                    if (runStart[i] < left[r])
+                    {
+                        left[r] = runStart[i];
+                    }
+                    right[r] = runEnd[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * fillRow()
+     *
+     * This method expands part of row y into one entry per pixel, 1 for set
+     * pixels and 0 for the rest.
+     *
+     * @param left the first pixel to expand
+     * @param columns how many pixels to expand
+     * @param pixels gets the expanded pixels
+     */
+    public void fillRow(int y, int left, int columns, int[] pixels)
+    {
+        int right = left + columns - 1;
+        for (int c = 0; c < columns; c++)
+        {
+            pixels[c] = 0;
+        }
+        for (int i = rowFirst[y]; i < rowFirst[y + 1]; i++)
+        {
+            int start = Math.max(left, runStart[i]);
+            int end = Math.min(right, runEnd[i]);
+            for (int x = start; x <= end; x++)
+            {
+                pixels[x - left] = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * ScoringStatistics
+ *
+ * This class counts how many particles scoreParticles() has looked at and
+ * at which stage each one was thrown out. The stages run from cheapest to
+ * most expensive, so a large count at a late stage means frame time is
+ * going into particles that are nearly targets, and a large count at the
+ * first stage means the threshold is letting through a lot of clutter.
+ */
+public class ScoringStatistics
+{
+
+    public static final int RECTANGULARITY = 0;
+    public static final int ASPECT_RATIO = 1;
+    public static final int X_EDGE = 2;
+    public static final int Y_EDGE = 3;
+    public static final int STAGES = 4;
+    static final String[] names =
+    {
+        "Rectangularity", "Aspect Ratio", "X Edge", "Y Edge"
+    };
+    int frames = 0;
+    int particles = 0;
+    int accepted = 0;
+    int tracked = 0;
+    int[] rejected = new int[STAGES];
+
+    /**
+     * frameScored()
+     *
+     * This method counts one frame and the particles that were in it.
+     */
+    public synchronized void frameScored(int particleCount)
+    {
+        frames++;
+        particles += particleCount;
+    }
+
+    /**
+     * reject()
+     *
+     * This method counts a particle thrown out at a stage.
+     *
+     * @param stage one of RECTANGULARITY, ASPECT_RATIO, X_EDGE or Y_EDGE
+     */
+    public synchronized void reject(int stage)
+    {
+        rejected[stage]++;
+    }
+
+    /**
+     * track()
+     *
+     * This method counts a particle that matched a confirmed track, so the
+     * edge stages were skipped for it.
+     */
+    public synchronized void track()
+    {
+        tracked++;
+    }
+
+    /**
+     * accept()
+     *
+     * This method counts a particle that passed every stage.
+     */
+    public synchronized void accept()
+    {
+        accepted++;
+    }
+
+    public synchronized int getFrames()
+    {
+        return frames;
+    }
+
+    public synchronized int getParticles()
+    {
+        return particles;
+    }
+
+    public synchronized int getAccepted()
+    {
+        return accepted;
+    }
+
+    public synchronized int getTracked()
+    {
+        return tracked;
+    }
+
+    /**
+     * getRejected()
+     *
+     * @param stage one of RECTANGULARITY, ASPECT_RATIO, X_EDGE or Y_EDGE
+     * @return the number of particles thrown out at the stage
+     */
+    public synchronized int getRejected(int stage)
+    {
+        return rejected[stage];
+    }
+
+    /**
+     * getStageName()
+     *
+     * @return a name for the stage to show on the dashboard
+     */
+    public static String getStageName(int stage)
+    {
+        return names[stage];
+    }
+
+    /**
+     * reset()
+     *
+     * This method sets every counter back to zero.
+     */
+    public synchronized void reset()
+    {
+        frames = 0;
+        particles = 0;
+        accepted = 0;
+        tracked = 0;
+        for (int i = 0; i < STAGES; i++)
+        {
+            rejected[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.CANJaguar;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.can.CANTimeoutException;
+
+/**
+ * SensorBus
+ *
+ * This class reads every sensor once per control loop iteration into a
+ * SensorSnapshot. Subsystems hand their sensors to the bus when they are
+ * built. Readers never share the bus's snapshot: each loop or task copies
+ * it into one of its own with copyInto() at the start of a run and passes
+ * that copy down.
+ *
+ * The Jaguars' limit switches are not in the snapshot. Reading them is a
+ * CAN transaction each, so they are only read by sampleLimitSwitches(),
+ * when an arm is being driven or its state is reported.
+ *
+ * sample() reads the hardware into a staging snapshot without holding the
+ * bus's lock, then copies it into the published one under the lock.
+ * copyInto() copies the published one under the same lock, so a copy is
+ * always one whole sample, never part of two.
+ */
+public class SensorBus
+{
+
+    public static final int MAX_DIGITAL_INPUTS = 8;
+    public static final int MAX_LIMIT_SWITCHES = 4;
+    static SensorBus instance = null;
+    DigitalInput[] digitalInputs = new DigitalInput[MAX_DIGITAL_INPUTS];
+    int digitalCount = 0;
+    CANJaguar[] limitSwitches = new CANJaguar[MAX_LIMIT_SWITCHES];
+    int limitCount = 0;
+    final Object limitLock = new Object();
+    boolean[] forwardLimit = new boolean[MAX_LIMIT_SWITCHES];
+    boolean[] reverseLimit = new boolean[MAX_LIMIT_SWITCHES];
+    boolean canFault = false;
+    GyroSensor gyro = null;
+    Ultrasonic ultrasonic = null;
+    // Only sample() touches staging, holding sampleLock; published is only
+    // touched holding the bus's own lock
+    final Object sampleLock = new Object();
+    SensorSnapshot staging = new SensorSnapshot();
+    SensorSnapshot published = new SensorSnapshot();
+    int sequence = 0;
+
+    /**
+     * getInstance()
+     *
+     * @return SensorBus - the robot's one sensor bus
+     */
+    public static synchronized SensorBus getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new SensorBus();
+        }
+        return instance;
+    }
+
+    /**
+     * addDigitalInput()
+     *
+     * This method adds a DigitalInput to the ones read every iteration.
+     *
+     * @param input the DigitalInput
+     * @return int - the slot to read it from with SensorSnapshot.getDigital()
+     */
+    public int addDigitalInput(DigitalInput input)
+    {
+        synchronized (sampleLock)
+        {
+            if (digitalCount == MAX_DIGITAL_INPUTS)
+            {
+                throw new RuntimeException("Too many DigitalInputs on the SensorBus");
+            }
+            digitalInputs[digitalCount] = input;
+            return digitalCount++;
+        }
+    }
+
+    /**
+     * addLimitSwitches()
+     *
+     * This method adds a Jaguar's forward and reverse limit switches to the
+     * ones read by sampleLimitSwitches().
+     *
+     * @param motor the Jaguar the switches are wired to
+     * @return int - the slot to read them from with getForwardLimitOK() and
+     * getReverseLimitOK()
+     */
+    public int addLimitSwitches(CANJaguar motor)
+    {
+        synchronized (limitLock)
+        {
+            if (limitCount == MAX_LIMIT_SWITCHES)
+            {
+                throw new RuntimeException("Too many limit switches on the SensorBus");
+            }
+            limitSwitches[limitCount] = motor;
+            return limitCount++;
+        }
+    }
+
+    /**
+     * sampleLimitSwitches()
+     *
+     * This method reads every Jaguar's limit switches. The ClimbingSystem
+     * calls it before it drives an arm or reports an arm's state, at that
+     * task's rate, rather than on every sample(), to keep the CAN bus free
+     * for the drive.
+     * A Jaguar that does not answer keeps its last readings.
+     */
+    public void sampleLimitSwitches()
+    {
+        synchronized (limitLock)
+        {
+            canFault = false;
+            for (int i = 0; i < limitCount; i++)
+            {
+                try
+                {
+                    forwardLimit[i] = limitSwitches[i].getForwardLimitOK();
+                    reverseLimit[i] = limitSwitches[i].getReverseLimitOK();
+                } catch (CANTimeoutException e)
+                {
+                    canFault = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * getForwardLimitOK()
+     *
+     * @param slot the slot addLimitSwitches() returned
+     * @return boolean - what the Jaguar's forward limit switch read at the
+     * last sampleLimitSwitches()
+     */
+    public boolean getForwardLimitOK(int slot)
+    {
+        synchronized (limitLock)
+        {
+            return forwardLimit[slot];
+        }
+    }
+
+    /**
+     * getReverseLimitOK()
+     *
+     * @param slot the slot addLimitSwitches() returned
+     * @return boolean - what the Jaguar's reverse limit switch read at the
+     * last sampleLimitSwitches()
+     */
+    public boolean getReverseLimitOK(int slot)
+    {
+        synchronized (limitLock)
+        {
+            return reverseLimit[slot];
+        }
+    }
+
+    /**
+     * hasCANFault()
+     *
+     * @return boolean - true if a Jaguar did not answer at the last
+     * sampleLimitSwitches()
+     */
+    public boolean hasCANFault()
+    {
+        synchronized (limitLock)
+        {
+            return canFault;
+        }
+    }
+
+    public void setGyro(GyroSensor gyroSensor)
+    {
+        synchronized (sampleLock)
+        {
+            gyro = gyroSensor;
+        }
+    }
+
+    public void setUltrasonic(Ultrasonic ultrasonicSensor)
+    {
+        synchronized (sampleLock)
+        {
+            ultrasonic = ultrasonicSensor;
+        }
+    }
+
+    /**
+     * sample()
+     *
+     * This method reads every sensor and publishes the readings. It is called
+     * once per iteration by the loop or task that keeps the sensors up to
+     * date.
+     */
+    public void sample()
+    {
+        synchronized (sampleLock)
+        {
+            staging.sequence = ++sequence;
+            staging.timestamp = Timer.getFPGATimestamp();
+            for (int i = 0; i < digitalCount; i++)
+            {
+                staging.digital[i] = digitalInputs[i].get();
+            }
+            if (gyro != null)
+            {
+                staging.gyroAngle = gyro.getAngle();
+                staging.gyroRate = gyro.getAngularRate();
+            }
+            if (ultrasonic != null)
+            {
+                staging.ultrasonicDistance = ultrasonic.getAveragedDistance();
+            }
+            synchronized (this)
+            {
+                published.copyFrom(staging);
+            }
+        }
+    }
+
+    /**
+     * copyInto()
+     *
+     * This method copies the readings taken by the last sample() into the
+     * caller's own snapshot.
+     *
+     * @param sensors the snapshot to fill
+     */
+    public synchronized void copyInto(SensorSnapshot sensors)
+    {
+        sensors.copyFrom(published);
+    }
+}
@@ -0,0 +1,101 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * SensorSnapshot
+ *
+ * This class holds one reading of every sensor on the robot, taken by
+ * SensorBus.sample(). Each loop or task keeps a snapshot of its own and
+ * fills it with SensorBus.copyInto() once at the start of a run, then hands
+ * it to everything it calls. Everything in that run sees the same values,
+ * and nothing else writes to the copy while it is being read.
+ *
+ * The arrays are made once, when the snapshot is made.
+ */
+public class SensorSnapshot
+{
+
+    int sequence = 0;
+    double timestamp = 0.0;
+    boolean[] digital = new boolean[SensorBus.MAX_DIGITAL_INPUTS];
+    double gyroAngle = 0.0;
+    double gyroRate = 0.0;
+    double ultrasonicDistance = 0.0;
+
+    /**
+     * copyFrom()
+     *
+     * This method makes this snapshot a copy of another one.
+     *
+     * @param other the snapshot to copy
+     */
+    void copyFrom(SensorSnapshot other)
+    {
+        sequence = other.sequence;
+        timestamp = other.timestamp;
+        System.arraycopy(other.digital, 0, digital, 0, digital.length);
+        gyroAngle = other.gyroAngle;
+        gyroRate = other.gyroRate;
+        ultrasonicDistance = other.ultrasonicDistance;
+    }
+
+    /**
+     * getSequence()
+     *
+     * @return int - counts up by one every time the bus is sampled
+     */
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * getTimestamp()
+     *
+     * @return double - the FPGA time in seconds the sensors were read
+     */
+    public double getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * getDigital()
+     *
+     * @param slot the slot SensorBus.addDigitalInput() returned
+     * @return boolean - what the DigitalInput read
+     */
+    public boolean getDigital(int slot)
+    {
+        return digital[slot];
+    }
+
+    /**
+     * getGyroAngle()
+     *
+     * @return double - the gyro's angle in degrees, like GyroSensor.getAngle()
+     */
+    public double getGyroAngle()
+    {
+        return gyroAngle;
+    }
+
+    /**
+     * getGyroRate()
+     *
+     * @return double - how fast the robot is turning in degrees per second
+     */
+    public double getGyroRate()
+    {
+        return gyroRate;
+    }
+
+    /**
+     * getUltrasonicDistance()
+     *
+     * @return double - the ultrasonic sensor's distance in inches
+     */
+    public double getUltrasonicDistance()
+    {
+        return ultrasonicDistance;
+    }
+}
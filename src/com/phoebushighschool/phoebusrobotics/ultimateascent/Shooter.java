@@ -23,6 +23,17 @@ public class Shooter {
     protected DigitalInput discSensor;
     protected DigitalInput shooterCockedSensor;
     protected DigitalInput shooterRetractedSensor;
+    protected int discSlot;
+    protected int shooterCockedSlot;
+    protected int shooterRetractedSlot;
+    protected int discEdge;
+    protected int shooterCockedEdge;
+    protected int shooterRetractedEdge;
+    // Where the cam is being driven to, so the EdgeMonitor can stop it there
+    static final int CAM_FREE = 0;
+    static final int CAM_TO_COCKED = 1;
+    static final int CAM_TO_RETRACTED = 2;
+    protected int camTarget = CAM_FREE;
 
     public Shooter() throws CANTimeoutException {
         motor = new CANJaguar(Parameters.WheelOneCANJaguarCANID, CANJaguar.ControlMode.kPercentVbus);
@@ -31,7 +42,58 @@ public class Shooter {
         discSensor = new DigitalInput(Parameters.DiscInShooterGPIOChannel);
         shooterCockedSensor = new DigitalInput(Parameters.ShooterIsCockedGPIOChannel);
         shooterRetractedSensor = new DigitalInput(Parameters.ShooterIsRetractedGPIOChannel);
+        SensorBus bus = SensorBus.getInstance();
+        discSlot = bus.addDigitalInput(discSensor);
+        shooterCockedSlot = bus.addDigitalInput(shooterCockedSensor);
+        shooterRetractedSlot = bus.addDigitalInput(shooterRetractedSensor);
+        EdgeMonitor edges = EdgeMonitor.getInstance();
+        discEdge = edges.watch(discSensor, null);
+        shooterCockedEdge = edges.watch(shooterCockedSensor, new StopCam(CAM_TO_COCKED));
+        shooterRetractedEdge = edges.watch(shooterRetractedSensor, new StopCam(CAM_TO_RETRACTED));
+    }
+
+    /**
+     * StopCam
+     * 
+     * This class stops the cam when it reaches the position it is being 
+     * driven to, as soon as the EdgeMonitor sees the sensor change.
+     */
+    class StopCam implements EdgeHandler {
 
+        int target;
+
+        StopCam(int camTarget) {
+            target = camTarget;
+        }
+
+        public void edge(boolean value, double timestamp) {
+            if (value) {
+                camReached(target);
+            }
+        }
+    }
+
+    synchronized void camReached(int target) {
+        if (camTarget != target) {
+            return;
+        }
+        camTarget = CAM_FREE;
+        try {
+            motor.setX(0.0);
+        } catch (CANTimeoutException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * read()
+     * 
+     * This method reads one of the shooter's sensors from the caller's 
+     * SensorBus snapshot, or from the EdgeMonitor if it has changed since the 
+     * snapshot was taken.
+     */
+    boolean read(SensorSnapshot sensors, int slot, int edge) {
+        return EdgeMonitor.getInstance().get(edge, sensors.getDigital(slot), sensors.getTimestamp());
     }
 
     /**
@@ -40,20 +102,23 @@ public class Shooter {
      * This method will move the cam until the arm is released.  It will stop
      * the cam once the arm reaches the "retracted" position.
      * 
+     * @param sensors this iteration's SensorBus snapshot
      * @return true - shooter is now in the retracted position
      *         false - shooter is still moving, not yet in retracted position
      * 
      * @exception CANTimeoutException - communication with Jaguar over the
      *                                  CAN bus was lost
      */
-    public boolean shoot() throws CANTimeoutException {
+    public synchronized boolean shoot(SensorSnapshot sensors) throws CANTimeoutException {
        
         //If the shooter is not cocked, then the shooter will not shoot the disc (Herp derp)
-        if (isShooterRetracted()) {
+        if (isShooterRetracted(sensors)) {
+            camTarget = CAM_FREE;
             motor.setX(0.0);
             return true;
             
         } else {
+            camTarget = CAM_TO_RETRACTED;
             motor.setX(Parameters.kShooterMotorSpeed); 
             return false; 
         }
@@ -65,17 +130,20 @@ public class Shooter {
      * This method will move the cam until the arm reaches the "cocked"
      * position.
      * 
+     * @param sensors this iteration's SensorBus snapshot
      * @return true - shooter is now in the cocked position
      *         false - shooter is still moving, not yet in cocked position
      * 
      * @exception CANTimeoutException - communication with Jaguar over the
      *                                  CAN bus was lost
      */
-    public boolean cockShooter() throws CANTimeoutException {
-        if (isShooterCocked()) {
+    public synchronized boolean cockShooter(SensorSnapshot sensors) throws CANTimeoutException {
+        if (isShooterCocked(sensors)) {
+            camTarget = CAM_FREE;
             motor.setX(0.0);
             return true;
         }
+        camTarget = CAM_TO_COCKED;
         motor.setX(Parameters.kShooterMotorSpeed);
         return false;
     }
@@ -83,13 +151,16 @@ public class Shooter {
     /**
      * shooterCockedSensor()
      * 
-     * Getter method to return the state of the shooter arming mechanism.
+     * Getter method to return the state of the shooter arming mechanism, as
+     * read by the SensorBus this iteration or by the EdgeMonitor since. It 
+     * does not move the cam; use cockShooter() for that.
      * 
+     * @param sensors this iteration's SensorBus snapshot
      * @return true - the cam is in the "cocked" position
      *         false - the cam is not in the "cocked" position
      */
-    public boolean isShooterCocked() throws CANTimeoutException {
-        return cockShooter();
+    public boolean isShooterCocked(SensorSnapshot sensors) {
+        return read(sensors, shooterCockedSlot, shooterCockedEdge);
     }
 
     /**
@@ -97,11 +168,12 @@ public class Shooter {
      * 
      * Method to return the state of the shooter being retracted.
      * 
+     * @param sensors this iteration's SensorBus snapshot
      * @return true - the cam is in the "retracted" position
      *         false - the cam is not in the "retracted" position 
      */
-    public boolean isShooterRetracted() {
-        return shooterRetractedSensor.get();
+    public boolean isShooterRetracted(SensorSnapshot sensors) {
+        return read(sensors, shooterRetractedSlot, shooterRetractedEdge);
     }
 
     /**
@@ -109,11 +181,12 @@ public class Shooter {
      * 
      * Method to return the state of the disc being loaded.
      * 
+     * @param sensors this iteration's SensorBus snapshot
      * @return true - the disc is in the "loaded" position
      *         false - the disc is not in the "loaded" position
      */
-    public boolean isDiscLoaded() {
-        return discSensor.get();
+    public boolean isDiscLoaded(SensorSnapshot sensors) {
+        return read(sensors, discSlot, discEdge);
     }
     
     /**
@@ -121,8 +194,9 @@ public class Shooter {
      * @param value
      * @throws CANTimeoutException 
      */
-    public void setShooterMotor(boolean value) throws CANTimeoutException 
+    public synchronized void setShooterMotor(boolean value) throws CANTimeoutException 
     {
+        camTarget = CAM_FREE;
         if (value)
         {
             motor.setX(Parameters.kShooterMotorSpeed);
@@ -141,8 +215,9 @@ public class Shooter {
      * @param canMove
      * @throws CANTimeoutException 
      */
-    public void moveShooterManual(boolean canMove, boolean forward) throws CANTimeoutException
+    public synchronized void moveShooterManual(boolean canMove, boolean forward) throws CANTimeoutException
     {
+        camTarget = CAM_FREE;
         if (canMove && forward)
             motor.setX(Parameters.kShooterMotorSpeed);
         else if (canMove)
@@ -38,15 +38,62 @@ public class SmartDashBoard
      * This method will update the Driver Station to the current values for 
      * the # of discs, true/false shooter ready, distance to target, 
      * degrees to target.
+     *
+     * @param sensors - the caller's copy of the sensor snapshot
      */
-    public void updateDashboard()
+    public void updateDashboard(SensorSnapshot sensors)
     {
         dash.putNumber("Discs Remaining", robot.getDiscCount());
         dash.putBoolean("Shooter Ready", robot.isShooterCocked());
-        dash.putBoolean("Shooter Loaded", robot.isShooterLoaded());
+        dash.putBoolean("Shooter Loaded", robot.isShooterLoaded(sensors));
         dash.putNumber("Distance to target", robot.getDistanceToTarget());
+        dash.putNumber("Distance confidence", robot.getDistanceConfidence());
         dash.putNumber("Degrees to target", robot.getDegreesToTarget());
+        dash.putNumber("Target confidence", robot.getTargetConfidence());
         dash.putString("Forward Arm:", robot.getArmState());
         dash.putString("The Game Mechanism is:", robot.getCurrentRobotActivity());
-    }    
+        dash.putNumber("Drive value", robot.getDrivePercent());
+        dash.putNumber("Turn value", robot.getTurnPercent());
+        FixedRateLoop loop = robot.getControlLoop();
+        dash.putNumber("Autonomous loop overruns", loop.getOverruns());
+        dash.putNumber("Autonomous loop ticks skipped", loop.getSkipped());
+        dash.putNumber("Autonomous loop max jitter", loop.getMaxJitter());
+        dash.putNumber("Autonomous loop period", loop.getCurrentPeriod());
+        TaskScheduler tasks = robot.getTeleopTasks();
+        for (int i = 0; i < tasks.getTaskCount(); i++)
+        {
+            PeriodicTask task = tasks.getTask(i);
+            dash.putNumber(task.getName() + " overruns", task.getLoop().getOverruns());
+            dash.putNumber(task.getName() + " max jitter", task.getLoop().getMaxJitter());
+        }
+        ScoringStatistics stats = robot.getScoringStatistics();
+        dash.putNumber("Particles Scored", stats.getParticles());
+        dash.putNumber("Particles Accepted", stats.getAccepted());
+        dash.putNumber("Particles Tracked", stats.getTracked());
+        for (int i = 0; i < ScoringStatistics.STAGES; i++)
+        {
+            dash.putNumber("Rejected by " + ScoringStatistics.getStageName(i), stats.getRejected(i));
+        }
+    }
+
+    /**
+     * updateProfile()
+     *
+     * This method puts the LoopProfiler's results on the Driver Station:
+     * the 50th and 99th percentile, the maximum in microseconds and the
+     * overruns of every segment. There are a lot of them, so this is only
+     * done at the end of a mode, not every update.
+     */
+    public void updateProfile()
+    {
+        LoopProfiler profiler = LoopProfiler.getInstance();
+        for (int i = 0; i < profiler.getSegmentCount(); i++)
+        {
+            LatencyHistogram h = profiler.getSegment(i);
+            dash.putNumber(h.getName() + " p50 us", h.getPercentile(0.5));
+            dash.putNumber(h.getName() + " p99 us", h.getPercentile(0.99));
+            dash.putNumber(h.getName() + " max us", h.getMax());
+            dash.putNumber(h.getName() + " overruns", h.getOverruns());
+        }
+    }
 }
\ No newline at end of file
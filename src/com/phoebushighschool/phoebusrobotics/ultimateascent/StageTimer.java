@@ -0,0 +1,37 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * StageTimer
+ *
+ * This interface times the stages of a pipeline that has to build and run
+ * without WPILib, such as the JavaVisionEngine on a coprocessor. On the
+ * robot the LoopProfiler implements it.
+ */
+public interface StageTimer
+{
+
+    /**
+     * addStage()
+     *
+     * @param name what the stage is called in the results
+     * @return the stage to pass to endStage()
+     */
+    public int addStage(String name);
+
+    /**
+     * startStage()
+     *
+     * @return the time to pass to endStage()
+     */
+    public long startStage();
+
+    /**
+     * endStage()
+     *
+     * This method records the time since startStage() against a stage.
+     *
+     * @param stage the stage addStage() returned
+     * @param start what startStage() returned
+     */
+    public void endStage(int stage, long start);
+}
@@ -0,0 +1,111 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import edu.wpi.first.wpilibj.Timer;
+import java.io.DataInputStream;
+import java.io.IOException;
+import javax.microedition.io.Connector;
+
+/**
+ * StreamFrameSource
+ *
+ * This class reads raw frames for the JavaVisionEngine from a Connector URL:
+ * three bytes per pixel, red then green then blue, in row major order, with
+ * nothing between frames. A file:/// URL replays saved frames, and a
+ * socket:// URL takes them from a coprocessor capturing the camera.
+ *
+ * When the stream ends or fails, readFrame() returns false and the next call
+ * opens it again, so a file of frames plays in a loop and a dropped socket
+ * is reconnected.
+ */
+public class StreamFrameSource implements FrameSource
+{
+
+    String url;
+    int width;
+    int height;
+    byte[] row;
+    DataInputStream in = null;
+    double frameTimestamp = 0.0;
+
+    /**
+     * StreamFrameSource
+     *
+     * @param streamURL the Connector URL the frames are read from
+     * @param frameWidth the width of every frame in pixels
+     * @param frameHeight the height of every frame in pixels
+     */
+    public StreamFrameSource(String streamURL, int frameWidth, int frameHeight)
+    {
+        url = streamURL;
+        width = frameWidth;
+        height = frameHeight;
+        row = new byte[width * 3];
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public boolean readFrame(int[] pixels)
+    {
+        try
+        {
+            if (in == null)
+            {
+                in = Connector.openDataInputStream(url);
+            }
+            for (int y = 0; y < height; y++)
+            {
+                in.readFully(row);
+                if (y == 0)
+                {
+                    // The frame was captured before its first row arrived
+                    frameTimestamp = Timer.getFPGATimestamp() - Parameters.CAMERA_LATENCY;
+                }
+                int p = y * width;
+                for (int b = 0; b < row.length; b += 3)
+                {
+                    pixels[p++] = ((row[b] & 0xFF) << 16)
+                            | ((row[b + 1] & 0xFF) << 8)
+                            | (row[b + 2] & 0xFF);
+                }
+            }
+            return true;
+        } catch (IOException e)
+        {
+            // Includes the EOFException at the end of a file
+            close();
+            return false;
+        }
+    }
+
+    public double getFrameTimestamp()
+    {
+        return frameTimestamp;
+    }
+
+    /**
+     * close()
+     *
+     * This method closes the stream. The next readFrame() opens it again.
+     */
+    public void close()
+    {
+        if (in != null)
+        {
+            try
+            {
+                in.close();
+            } catch (IOException e)
+            {
+            }
+            in = null;
+        }
+    }
+}
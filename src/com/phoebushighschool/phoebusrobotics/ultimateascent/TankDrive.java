@@ -34,6 +34,7 @@ public class TankDrive implements PIDOutput, PIDSource
         rightTread.setGear(Tread.Gear.kLow);
         leftTread.setGear(Tread.Gear.kLow);
         gyro = new GyroSensor(Parameters.gyroAnalogChannel);
+        SensorBus.getInstance().setGyro(gyro);
         
     }
 
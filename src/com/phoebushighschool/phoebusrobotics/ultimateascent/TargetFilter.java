@@ -0,0 +1,154 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * TargetFilter
+ *
+ * This class smooths the target's bearing and distance between camera
+ * frames with an alpha-beta filter, so the control loop gets a fresh
+ * estimate on every tick instead of the same value until the next frame.
+ *
+ * The bearing is kept as a gyro heading rather than relative to the robot.
+ * Turning the robot does not move the target's heading, so the gyro takes
+ * care of the robot's own motion and the filter only has to follow the
+ * target's. If frames stop coming the estimate coasts on the last rates
+ * for up to Parameters.TARGET_COAST_TIME, with its confidence falling off
+ * over that time.
+ */
+public class TargetFilter
+{
+
+    final double ALPHA = 0.5;
+    final double BETA = 0.1;
+    final double CONFIDENCE_GAIN = 0.5;
+    boolean valid = false;
+    int trackId = 0;
+    double time = 0.0;
+    double heading = 0.0;
+    double headingRate = 0.0;
+    double distance = 0.0;
+    double distanceRate = 0.0;
+    double confidence = 0.0;
+
+    /**
+     * update()
+     *
+     * This method adds a measurement from a frame where the target was
+     * found. A measurement of a different track, or one that comes after
+     * the estimate has run out, starts the filter over.
+     *
+     * @param timestamp the FPGA time in seconds the frame was captured
+     * @param measuredHeading the gyro heading of the target in degrees
+     * @param measuredDistance the distance to the target in inches
+     * @param measuredTrackId the TargetTracker id of the target
+     */
+    public synchronized void update(double timestamp, double measuredHeading,
+            double measuredDistance, int measuredTrackId)
+    {
+        double dt = timestamp - time;
+        if (!valid || measuredTrackId != trackId || dt > Parameters.TARGET_COAST_TIME)
+        {
+            valid = true;
+            trackId = measuredTrackId;
+            time = timestamp;
+            heading = measuredHeading;
+            headingRate = 0.0;
+            distance = measuredDistance;
+            distanceRate = 0.0;
+            confidence = CONFIDENCE_GAIN;
+            return;
+        }
+        if (dt <= 0.0)
+        {
+            return;
+        }
+        double predicted = heading + headingRate * dt;
+        double residual = measuredHeading - predicted;
+        heading = predicted + ALPHA * residual;
+        headingRate += BETA * residual / dt;
+
+        predicted = distance + distanceRate * dt;
+        residual = measuredDistance - predicted;
+        distance = predicted + ALPHA * residual;
+        distanceRate += BETA * residual / dt;
+
+        time = timestamp;
+        confidence += (1.0 - confidence) * CONFIDENCE_GAIN;
+    }
+
+    /**
+     * miss()
+     *
+     * This method lowers the confidence after a frame where the target was
+     * not found. The estimate itself keeps coasting.
+     */
+    public synchronized void miss()
+    {
+        confidence *= 1.0 - CONFIDENCE_GAIN;
+    }
+
+    /**
+     * hasTarget()
+     *
+     * @param now the FPGA time in seconds
+     * @return true if there is an estimate for the time
+     */
+    public synchronized boolean hasTarget(double now)
+    {
+        return valid && now - time <= Parameters.TARGET_COAST_TIME;
+    }
+
+    /**
+     * getHeading()
+     *
+     * @param now the FPGA time in seconds
+     * @return the estimated gyro heading of the target at the time, in degrees
+     */
+    public synchronized double getHeading(double now)
+    {
+        return heading + headingRate * getAge(now);
+    }
+
+    /**
+     * getDistance()
+     *
+     * @param now the FPGA time in seconds
+     * @return the estimated distance to the target at the time, in inches
+     */
+    public synchronized double getDistance(double now)
+    {
+        return distance + distanceRate * getAge(now);
+    }
+
+    /**
+     * getConfidence()
+     *
+     * @param now the FPGA time in seconds
+     * @return from 0 - 1, how much the estimate can be trusted at the time.
+     * It grows with every frame the target is found in, drops with every
+     * frame it is missed in, and fades to 0 while coasting.
+     */
+    public synchronized double getConfidence(double now)
+    {
+        if (!hasTarget(now))
+        {
+            return 0.0;
+        }
+        return confidence * (1.0 - getAge(now) / Parameters.TARGET_COAST_TIME);
+    }
+
+    /**
+     * reset()
+     *
+     * This method throws the estimate away.
+     */
+    public synchronized void reset()
+    {
+        valid = false;
+        confidence = 0.0;
+    }
+
+    double getAge(double now)
+    {
+        return Math.max(0.0, Math.min(now - time, Parameters.TARGET_COAST_TIME));
+    }
+}
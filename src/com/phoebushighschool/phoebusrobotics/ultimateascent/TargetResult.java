@@ -0,0 +1,104 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * TargetResult
+ *
+ * This class is the outcome of scoring one camera frame. The TargetSlot
+ * keeps a few of them and the vision thread fills them in turn, so no
+ * result is allocated per frame. Once published a result is not changed
+ * until its slot comes round again, and the sequence number is cleared
+ * while it is being refilled, so a reader copying it can tell.
+ */
+public class TargetResult
+{
+
+    public volatile int sequence = 0;
+    public volatile double timestamp = 0.0;
+    public volatile boolean found = false;
+    public volatile double aspectRatio = 0.0;
+    public volatile boolean middle = true;
+    public volatile double center_mass_x = 0.0;
+    public volatile double target_width = 0.0;
+    public volatile int boundingRectLeft = 0;
+    public volatile int boundingRectTop = 0;
+    public volatile int boundingRectHeight = 0;
+    public volatile int trackId = 0;
+
+    /**
+     * setMissed()
+     *
+     * This method fills in the result of a frame where no target was found.
+     *
+     * @param sequence the number of the frame, counting up from 1
+     * @param timestamp the FPGA time in seconds when the frame was captured
+     */
+    void setMissed(int sequence, double timestamp)
+    {
+        this.sequence = 0;
+        this.timestamp = timestamp;
+        found = false;
+        aspectRatio = 0.0;
+        middle = true;
+        center_mass_x = 0.0;
+        target_width = 0.0;
+        boundingRectLeft = 0;
+        boundingRectTop = 0;
+        boundingRectHeight = 0;
+        trackId = 0;
+        this.sequence = sequence;
+    }
+
+    /**
+     * setFound()
+     *
+     * This method fills in the result of a frame where a target was found.
+     *
+     * @param sequence the number of the frame, counting up from 1
+     * @param timestamp the FPGA time in seconds when the frame was captured
+     * @param trackId the id of the TargetTracker track the target belongs to
+     */
+    void setFound(int sequence, double timestamp, double aspectRatio,
+            boolean middle, double center_mass_x, double target_width,
+            int boundingRectLeft, int boundingRectTop, int boundingRectHeight,
+            int trackId)
+    {
+        this.sequence = 0;
+        this.timestamp = timestamp;
+        found = true;
+        this.aspectRatio = aspectRatio;
+        this.middle = middle;
+        this.center_mass_x = center_mass_x;
+        this.target_width = target_width;
+        this.boundingRectLeft = boundingRectLeft;
+        this.boundingRectTop = boundingRectTop;
+        this.boundingRectHeight = boundingRectHeight;
+        this.trackId = trackId;
+        this.sequence = sequence;
+    }
+
+    /**
+     * copyFrom()
+     *
+     * This method copies another result.
+     *
+     * @return true - the copy is whole
+     *         false - the other result was being refilled while it was
+     *         copied
+     */
+    boolean copyFrom(TargetResult other)
+    {
+        int otherSequence = other.sequence;
+        timestamp = other.timestamp;
+        found = other.found;
+        aspectRatio = other.aspectRatio;
+        middle = other.middle;
+        center_mass_x = other.center_mass_x;
+        target_width = other.target_width;
+        boundingRectLeft = other.boundingRectLeft;
+        boundingRectTop = other.boundingRectTop;
+        boundingRectHeight = other.boundingRectHeight;
+        trackId = other.trackId;
+        sequence = otherSequence;
+        return otherSequence != 0 && other.sequence == otherSequence;
+    }
+}
@@ -0,0 +1,113 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * TargetSlot
+ *
+ * This class holds the newest TargetResult. The vision thread fills a
+ * result on its own and then swaps it in with a single volatile write, so
+ * readers never wait on the vision thread.
+ *
+ * The results come from a ring of RING_SIZE preallocated ones, so scoring a
+ * frame does not allocate. The one being filled is never the newest, so a
+ * result is only refilled two frames after it was replaced. Readers on
+ * other threads copy the newest one with copyInto(), which checks its
+ * sequence number and tries again in the rare case the copy was overtaken.
+ */
+public class TargetSlot
+{
+
+    static final int RING_SIZE = 3;
+    private final TargetResult[] ring = new TargetResult[RING_SIZE];
+    private int next = 0;
+    private volatile TargetResult latest = null;
+
+    public TargetSlot()
+    {
+        for (int i = 0; i < RING_SIZE; i++)
+        {
+            ring[i] = new TargetResult();
+        }
+    }
+
+    /**
+     * next()
+     *
+     * This method hands out the result to fill for the next frame. It
+     * should only be called from the thread that publishes.
+     *
+     * @return a result that is not the newest one
+     */
+    public TargetResult next()
+    {
+        TargetResult result = ring[next];
+        next = (next + 1) % RING_SIZE;
+        return result;
+    }
+
+    /**
+     * publish()
+     *
+     * This method replaces the newest result. It should only be called from
+     * one thread.
+     *
+     * @param result a result from next() that has been filled in
+     */
+    public void publish(TargetResult result)
+    {
+        latest = result;
+    }
+
+    /**
+     * get()
+     *
+     * The result returned is refilled a couple of frames later, so this
+     * should only be used on the thread that publishes. Other threads use
+     * copyInto().
+     *
+     * @return the newest result, or null if no frame has been scored yet
+     */
+    public TargetResult get()
+    {
+        return latest;
+    }
+
+    /**
+     * copyInto()
+     *
+     * This method copies the newest result without locking.
+     *
+     * @param copy the caller's own result to copy into
+     * @return true - copy holds the newest result
+     *         false - no frame has been scored yet
+     */
+    public boolean copyInto(TargetResult copy)
+    {
+        while (true)
+        {
+            TargetResult result = latest;
+            if (result == null)
+            {
+                return false;
+            }
+            if (copy.copyFrom(result))
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * getSequence()
+     *
+     * @return the sequence number of the newest result, 0 if there is none
+     */
+    public int getSequence()
+    {
+        TargetResult result = latest;
+        if (result == null)
+        {
+            return 0;
+        }
+        return result.sequence;
+    }
+}
@@ -0,0 +1,372 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * TargetTracker
+ *
+ * This class follows the targets found in each frame from one frame to the
+ * next. Every target becomes a track with an id that stays the same as long
+ * as the target keeps being seen near where the track's velocity says it
+ * should be. A track is confirmed once it has been seen a few times, and is
+ * dropped after it has been missed for a few frames in a row.
+ *
+ * One track at a time is locked. The lock only moves to another track when
+ * the locked one is dropped, so the aim stays on one goal even when two
+ * goals score about the same.
+ *
+ * The tracks are kept in arrays that are allocated once.
+ */
+public class TargetTracker
+{
+
+    final int MAX_TRACKS = 8;
+    // How far a target may be from where its track was expected, as a
+    // fraction of its size
+    final double GATE = 0.5;
+    final double MAX_SIZE_CHANGE = 1.5;
+    final int CONFIRM_HITS = 3;
+    final int MAX_MISSES = 3;
+    final double VELOCITY_GAIN = 0.5;
+    int trackCount = 0;
+    int nextId = 1;
+    int lockedId = 0;
+    double lastTimestamp = 0.0;
+    double timestamp = 0.0;
+    int[] id = new int[MAX_TRACKS];
+    double[] x = new double[MAX_TRACKS];
+    double[] y = new double[MAX_TRACKS];
+    double[] width = new double[MAX_TRACKS];
+    double[] height = new double[MAX_TRACKS];
+    double[] velocityX = new double[MAX_TRACKS];
+    double[] velocityY = new double[MAX_TRACKS];
+    double[] predictedX = new double[MAX_TRACKS];
+    double[] predictedY = new double[MAX_TRACKS];
+    double[] confidence = new double[MAX_TRACKS];
+    int[] hits = new int[MAX_TRACKS];
+    int[] misses = new int[MAX_TRACKS];
+    boolean[] middle = new boolean[MAX_TRACKS];
+    int[] trackDetection = new int[MAX_TRACKS];
+    int[] detectionTrack;
+
+    /**
+     * TargetTracker
+     *
+     * @param maxDetections the most targets passed to update() for one frame
+     */
+    public TargetTracker(int maxDetections)
+    {
+        detectionTrack = new int[maxDetections];
+    }
+
+    /**
+     * predict()
+     *
+     * This method moves every track to where it should be at the time a new
+     * frame was captured. It must be called before isConfirmed() and
+     * update() for the frame.
+     *
+     * @param frameTimestamp the FPGA time in seconds the frame was captured
+     */
+    public void predict(double frameTimestamp)
+    {
+        timestamp = frameTimestamp;
+        double dt = 0.0;
+        if (lastTimestamp > 0.0 && timestamp > lastTimestamp)
+        {
+            dt = timestamp - lastTimestamp;
+        }
+        for (int i = 0; i < trackCount; i++)
+        {
+            predictedX[i] = x[i] + velocityX[i] * dt;
+            predictedY[i] = y[i] + velocityY[i] * dt;
+        }
+    }
+
+    /**
+     * isConfirmed()
+     *
+     * @return true if the target matches a confirmed track, which means it
+     * was accepted as a target in the last few frames and does not need to
+     * be checked as closely again
+     */
+    public boolean isConfirmed(double centerX, int top, double width, int height)
+    {
+        for (int i = 0; i < trackCount; i++)
+        {
+            if (hits[i] >= CONFIRM_HITS
+                    && distance(i, centerX, top + height / 2.0, width, height) >= 0.0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * update()
+     *
+     * This method matches the targets accepted from a frame to the tracks,
+     * nearest first. Matched tracks move to their target, targets without a
+     * track start a new one, and tracks that have been missed too often are
+     * dropped.
+     *
+     * @param count the number of targets
+     * @param centerX the x center of mass of each target
+     * @param top the top of each target's bounding rectangle
+     * @param width the width of each target's bounding rectangle
+     * @param height the height of each target's bounding rectangle
+     * @param isMiddle true for each target that is a middle goal
+     */
+    public void update(int count, double[] centerX, int[] top, double[] width,
+            int[] height, boolean[] isMiddle)
+    {
+        double dt = 0.0;
+        if (lastTimestamp > 0.0 && timestamp > lastTimestamp)
+        {
+            dt = timestamp - lastTimestamp;
+        }
+        lastTimestamp = timestamp;
+        for (int i = 0; i < trackCount; i++)
+        {
+            trackDetection[i] = -1;
+        }
+        for (int d = 0; d < count; d++)
+        {
+            detectionTrack[d] = -1;
+        }
+
+        while (true)
+        {
+            int bestTrack = -1;
+            int bestDetection = -1;
+            double best = 0.0;
+            for (int i = 0; i < trackCount; i++)
+            {
+                if (trackDetection[i] >= 0)
+                {
+                    continue;
+                }
+                for (int d = 0; d < count; d++)
+                {
+                    if (detectionTrack[d] >= 0)
+                    {
+                        continue;
+                    }
+                    double cost = distance(i, centerX[d], top[d] + height[d] / 2.0, width[d], height[d]);
+                    if (cost >= 0.0 && (bestTrack < 0 || cost < best))
+                    {
+                        bestTrack = i;
+                        bestDetection = d;
+                        best = cost;
+                    }
+                }
+            }
+            if (bestTrack < 0)
+            {
+                break;
+            }
+            trackDetection[bestTrack] = bestDetection;
+            detectionTrack[bestDetection] = bestTrack;
+        }
+
+        for (int i = 0; i < trackCount; i++)
+        {
+            int d = trackDetection[i];
+            if (d >= 0)
+            {
+                double newY = top[d] + height[d] / 2.0;
+                if (dt > 0.0)
+                {
+                    velocityX[i] += VELOCITY_GAIN * ((centerX[d] - x[i]) / dt - velocityX[i]);
+                    velocityY[i] += VELOCITY_GAIN * ((newY - y[i]) / dt - velocityY[i]);
+                }
+                x[i] = centerX[d];
+                y[i] = newY;
+                this.width[i] = width[d];
+                this.height[i] = height[d];
+                middle[i] = isMiddle[d];
+                hits[i]++;
+                misses[i] = 0;
+                confidence[i] += (1.0 - confidence[i]) * 0.5;
+            } else
+            {
+                x[i] = predictedX[i];
+                y[i] = predictedY[i];
+                misses[i]++;
+                confidence[i] *= 0.5;
+            }
+        }
+
+        for (int i = trackCount - 1; i >= 0; i--)
+        {
+            if (misses[i] > MAX_MISSES)
+            {
+                removeTrack(i);
+            }
+        }
+
+        for (int d = 0; d < count && trackCount < MAX_TRACKS; d++)
+        {
+            if (detectionTrack[d] < 0)
+            {
+                int i = trackCount++;
+                id[i] = nextId++;
+                x[i] = centerX[d];
+                y[i] = top[d] + height[d] / 2.0;
+                this.width[i] = width[d];
+                this.height[i] = height[d];
+                velocityX[i] = 0.0;
+                velocityY[i] = 0.0;
+                middle[i] = isMiddle[d];
+                hits[i] = 1;
+                misses[i] = 0;
+                confidence[i] = 0.5;
+                trackDetection[i] = d;
+                detectionTrack[d] = i;
+            }
+        }
+    }
+
+    /**
+     * lock()
+     *
+     * This method keeps the lock on the locked track while it lasts. When
+     * there is no locked track, or it is not the kind of goal being aimed
+     * at, the lock moves to the track of the preferred target.
+     *
+     * @param preferred the target to lock on to if the lock has to move, or
+     * -1 for none
+     * @param wantMiddle true when aiming at a middle goal
+     * @return the target the locked track matched in this frame, or -1 if it
+     * was not seen
+     */
+    public int lock(int preferred, boolean wantMiddle)
+    {
+        int i = findTrack(lockedId);
+        if (i < 0 || middle[i] != wantMiddle)
+        {
+            lockedId = 0;
+            i = -1;
+            if (preferred >= 0 && detectionTrack[preferred] >= 0)
+            {
+                i = detectionTrack[preferred];
+                lockedId = id[i];
+            }
+        }
+        if (i < 0)
+        {
+            return -1;
+        }
+        return trackDetection[i];
+    }
+
+    /**
+     * getLockedId()
+     *
+     * @return the id of the locked track, 0 if there is none
+     */
+    public int getLockedId()
+    {
+        return lockedId;
+    }
+
+    /**
+     * getLockedVelocityX()
+     *
+     * @return how fast the locked track moves across the image in pixels per
+     * second, 0.0 if there is none
+     */
+    public double getLockedVelocityX()
+    {
+        int i = findTrack(lockedId);
+        return i < 0 ? 0.0 : velocityX[i];
+    }
+
+    /**
+     * getLockedConfidence()
+     *
+     * @return from 0 - 1, how steadily the locked track has been seen lately,
+     * 0.0 if there is none
+     */
+    public double getLockedConfidence()
+    {
+        int i = findTrack(lockedId);
+        return i < 0 ? 0.0 : confidence[i];
+    }
+
+    public int getTrackCount()
+    {
+        return trackCount;
+    }
+
+    /**
+     * reset()
+     *
+     * This method drops every track and the lock.
+     */
+    public void reset()
+    {
+        trackCount = 0;
+        lockedId = 0;
+        lastTimestamp = 0.0;
+    }
+
+    /**
+     * distance()
+     *
+     * @return how far a target is from where track i is expected, squared,
+     * or -1.0 if it is too far away or too different in size to be the same
+     * target
+     */
+    double distance(int i, double centerX, double centerY, double targetWidth,
+            double targetHeight)
+    {
+        if (targetWidth > width[i] * MAX_SIZE_CHANGE || width[i] > targetWidth * MAX_SIZE_CHANGE
+                || targetHeight > height[i] * MAX_SIZE_CHANGE || height[i] > targetHeight * MAX_SIZE_CHANGE)
+        {
+            return -1.0;
+        }
+        double dx = centerX - predictedX[i];
+        double dy = centerY - predictedY[i];
+        if (Math.abs(dx) > GATE * Math.max(width[i], targetWidth)
+                || Math.abs(dy) > GATE * Math.max(height[i], targetHeight))
+        {
+            return -1.0;
+        }
+        return dx * dx + dy * dy;
+    }
+
+    int findTrack(int trackId)
+    {
+        for (int i = 0; i < trackCount; i++)
+        {
+            if (id[i] == trackId)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void removeTrack(int i)
+    {
+        trackCount--;
+        id[i] = id[trackCount];
+        x[i] = x[trackCount];
+        y[i] = y[trackCount];
+        width[i] = width[trackCount];
+        height[i] = height[trackCount];
+        velocityX[i] = velocityX[trackCount];
+        velocityY[i] = velocityY[trackCount];
+        predictedX[i] = predictedX[trackCount];
+        predictedY[i] = predictedY[trackCount];
+        confidence[i] = confidence[trackCount];
+        hits[i] = hits[trackCount];
+        misses[i] = misses[trackCount];
+        middle[i] = middle[trackCount];
+        trackDetection[i] = trackDetection[trackCount];
+        if (trackDetection[i] >= 0)
+        {
+            detectionTrack[trackDetection[i]] = i;
+        }
+    }
+}
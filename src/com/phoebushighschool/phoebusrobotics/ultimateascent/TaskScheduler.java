@@ -0,0 +1,84 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+import java.util.Vector;
+
+/**
+ * TaskScheduler
+ *
+ * This class runs a set of PeriodicTasks, each on its own thread at its own
+ * rate and priority. Tasks are added once, and the whole set is started and
+ * stopped together, for example at the start and end of teleop.
+ */
+public class TaskScheduler
+{
+
+    Vector tasks = new Vector();
+    Thread[] threads = new Thread[0];
+
+    /**
+     * add()
+     *
+     * This method adds a task. Tasks added while the scheduler is running
+     * start the next time it is started.
+     *
+     * @param task the task
+     */
+    public synchronized void add(PeriodicTask task)
+    {
+        tasks.addElement(task);
+    }
+
+    /**
+     * start()
+     *
+     * This method starts a thread for every task.
+     */
+    public synchronized void start()
+    {
+        stop();
+        threads = new Thread[tasks.size()];
+        for (int i = 0; i < threads.length; i++)
+        {
+            PeriodicTask task = (PeriodicTask) tasks.elementAt(i);
+            task.running = true;
+            threads[i] = new Thread(task);
+            threads[i].setPriority(task.getPriority());
+            threads[i].start();
+        }
+    }
+
+    /**
+     * stop()
+     *
+     * This method stops every task and waits for each one to finish its
+     * current run.
+     */
+    public synchronized void stop()
+    {
+        for (int i = 0; i < threads.length; i++)
+        {
+            ((PeriodicTask) tasks.elementAt(i)).running = false;
+        }
+        for (int i = 0; i < threads.length; i++)
+        {
+            try
+            {
+                threads[i].join();
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+        threads = new Thread[0];
+    }
+
+    public synchronized int getTaskCount()
+    {
+        return tasks.size();
+    }
+
+    public synchronized PeriodicTask getTask(int index)
+    {
+        return (PeriodicTask) tasks.elementAt(index);
+    }
+}
@@ -22,10 +22,22 @@ public class UltimateAscentBot extends SimpleRobot {
     public FRCMath math;
     public PIDController aimController;
     public PIDController turnController;
+    FixedRateLoop controlLoop = new FixedRateLoop(Parameters.CONTROL_LOOP_PERIOD,
+            Parameters.CONTROL_LOOP_OVERRUN_POLICY);
+    SensorSnapshot autonomousSensors = new SensorSnapshot();
+    TaskScheduler teleopTasks = new TaskScheduler();
+    LoopProfiler profiler = LoopProfiler.getInstance();
+    int autonomousSegment = profiler.addSegment("Autonomous", Parameters.CONTROL_LOOP_PERIOD);
+    int autonomousDashboardSegment = profiler.addSegment("Autonomous dashboard", Parameters.CONTROL_LOOP_PERIOD);
+    double kDamp = 0.0;
+    volatile double lastDrivePercent = 0.0;
+    volatile double lastTurnPercent = 0.0;
     private SmartDashBoard dash;
     public ClimbingSystem climber;
     DriverStation ds;
     boolean turning = false;
+    double aimHeading = 0.0;
+    double settledSince = 0.0;
     protected Joystick driveStick;
     protected Joystick shooterStick;
     protected Joystick armStick;
@@ -41,6 +53,10 @@ public class UltimateAscentBot extends SimpleRobot {
             System.out.println(ex);
         }
         visionSystem = new AimingSystem();
+        if (drive.isGyroPresent()) {
+            visionSystem.setGyro(drive.gyro);
+        }
+        visionSystem.startVision();
         aimController = new PIDController(Parameters.kRobotProportional,
                 Parameters.kRobotIntegral,
                 Parameters.kRobotDifferential,
@@ -51,7 +67,8 @@ public class UltimateAscentBot extends SimpleRobot {
                     Parameters.kRobotIntegral,
                     Parameters.kRobotDifferential,
                     drive,
-                    drive);
+                    drive,
+                    Parameters.TURN_CONTROLLER_PERIOD);
         }
         dash = new SmartDashBoard(this);
         ds = DriverStation.getInstance();
@@ -67,6 +84,11 @@ public class UltimateAscentBot extends SimpleRobot {
         driveStick = new Joystick(1);
         shooterStick = new Joystick(2);
         armStick = new Joystick(3);
+        teleopTasks.add(new SensorTask());
+        teleopTasks.add(new DriveTask());
+        teleopTasks.add(new GameMechTask());
+        teleopTasks.add(new ClimberTask());
+        teleopTasks.add(new DashboardTask());
     }
 
     public void autonomous() {
@@ -81,16 +103,33 @@ public class UltimateAscentBot extends SimpleRobot {
                 turnController.setPID(_P, _I, _D);
             }
             RobotState state = new RobotState();
+            // Autonomous starts the match, so the profile starts over with it
+            profiler.reset();
+            int lastState = -1;
+            controlLoop.start();
             while (isAutonomous() && isEnabled()) {
-                dash.updateDashboard();
+                long start = LoopProfiler.start();
+                SensorBus.getInstance().sample();
+                SensorBus.getInstance().copyInto(autonomousSensors);
+                visionSystem.update(autonomousSensors);
+                if (!controlLoop.isDegraded()) {
+                    long dashStart = LoopProfiler.start();
+                    dash.updateDashboard(autonomousSensors);
+                    profiler.end(autonomousDashboardSegment, dashStart);
+                }
                 double time = Timer.getFPGATimestamp();
+                // Only print when the state changes, not every iteration
+                boolean entered = state.getState() != lastState;
+                lastState = state.getState();
                 switch (state.getState()) {
                     case RobotState.drive:
                         drive.drive(Parameters.AUTONOMOUS_DRIVE_FORWARD_SPEED, 0.0, kDamp);
                         if (Timer.getFPGATimestamp() - time < 0.5) {
                             state.nextState();
                         }
-                        System.out.println("Driving forward");
+                        if (entered) {
+                            System.out.println("Driving forward");
+                        }
                         currentRobotActivity = "Driving";
                         break;
                     case RobotState.turnTowardsTarget:
@@ -98,7 +137,9 @@ public class UltimateAscentBot extends SimpleRobot {
                             if (setAngle(-20.0)) {
                                 state.nextState();
                             }
-                            System.out.println("Turning towards");
+                            if (entered) {
+                                System.out.println("Turning towards");
+                            }
                             currentRobotActivity = "Turning to face target";
                             break;
                         } else {
@@ -109,7 +150,7 @@ public class UltimateAscentBot extends SimpleRobot {
                     case RobotState.turnToTarget:
                         boolean aimed;
                         try {
-                            aimed = aim();
+                            aimed = aim(autonomousSensors);
                         } catch (NoTargetFoundException e) {
                             break;
                         }
@@ -121,7 +162,7 @@ public class UltimateAscentBot extends SimpleRobot {
                         break;
                     case RobotState.cockShooter:
                         if (gameMech != null) {
-                            if (gameMech.cockShooter()) {
+                            if (gameMech.cockShooter(autonomousSensors)) {
                                 state.nextState();
                                 currentRobotActivity = "preparing to shoot";
                                 break;
@@ -150,19 +191,24 @@ public class UltimateAscentBot extends SimpleRobot {
                         }
                         break;
                 }
-                Timer.delay(Parameters.TIMER_DELAY);
                 getWatchdog().feed();
+                profiler.end(autonomousSegment, start);
+                controlLoop.waitForNextTick();
             }
-            DisableAimController();
+            StopTurning();
         } catch (CANTimeoutException e) {
         }
+        saveProfile();
     }
 
     /**
+     * operatorControl()
      *
+     * Teleop runs as a set of tasks on the teleopTasks scheduler, each at its 
+     * own rate, while this thread waits for the mode to end.
      */
     public void operatorControl() {
-        double kDamp = (ds.getAnalogIn(1) / 3.3) * 50;
+        kDamp = (ds.getAnalogIn(1) / 3.3) * 50;
 //        double _P = (ds.getAnalogIn(1) / 3.3) * 100.0;
 //        double _I = (ds.getAnalogIn(2) / 3.3) * 0.01;
 //        double _D = (ds.getAnalogIn(3) / 3.3) * 0.01;
@@ -171,12 +217,66 @@ public class UltimateAscentBot extends SimpleRobot {
 //        {
 //            turnController.setPID(_P, _I, _D);
 //        }
-        int i = 0;
+        teleopTasks.start();
         while (isOperatorControl() && isEnabled()) {
-//            dash.updateDashboard();
-            //
-            // Driver Controls
-            //
+            Timer.delay(Parameters.TIMER_DELAY);
+        }
+        teleopTasks.stop();
+        saveProfile();
+    }
+
+    /**
+     * saveProfile()
+     *
+     * This method puts the LoopProfiler's results on the dashboard and in 
+     * Parameters.PROFILE_FILE at the end of a mode.
+     */
+    void saveProfile() {
+        dash.updateProfile();
+        profiler.writeToFile(Parameters.PROFILE_FILE);
+    }
+
+    /**
+     * SensorTask
+     *
+     * This task samples the SensorBus and works out the aim solution, ahead 
+     * of the tasks that use them.
+     */
+    class SensorTask extends PeriodicTask {
+
+        SensorSnapshot sensors = new SensorSnapshot();
+
+        SensorTask() {
+            super("Sensors", Parameters.SENSOR_TASK_PERIOD, Thread.NORM_PRIORITY + 3);
+        }
+
+        public void execute() {
+            SensorBus.getInstance().sample();
+            SensorBus.getInstance().copyInto(sensors);
+            visionSystem.update(sensors);
+        }
+    }
+
+    /**
+     * DriveTask
+     *
+     * This task runs the driver's controls: driving, shifting gears and 
+     * pointing the camera. It feeds the watchdog, so the robot stops if 
+     * driving stops.
+     */
+    class DriveTask extends PeriodicTask {
+
+        int joystickSegment = profiler.addSegment("Drive joystick", Parameters.DRIVE_TASK_PERIOD);
+        int motorSegment = profiler.addSegment("Drive motors", Parameters.DRIVE_TASK_PERIOD);
+        int gearSegment = profiler.addSegment("Drive gears", Parameters.DRIVE_TASK_PERIOD);
+        int servoSegment = profiler.addSegment("Drive servo", Parameters.DRIVE_TASK_PERIOD);
+
+        DriveTask() {
+            super("Drive", Parameters.DRIVE_TASK_PERIOD, Thread.NORM_PRIORITY + 2);
+        }
+
+        public void execute() {
+            long start = LoopProfiler.start();
             try {
                 double drivePercent = driveStick.getY() * -1.0;
                 if (drivePercent < Parameters.kJoystickDeadband
@@ -188,20 +288,17 @@ public class UltimateAscentBot extends SimpleRobot {
                         && turnPercent > (-1.0 * Parameters.kJoystickDeadband)) {
                     turnPercent = 0.0;
                 }
-                switch (i) {
-                    default:
-                        i++;
-                        break;
-                    case 3:
-                        System.out.println("Drive value: " + drivePercent + ", Turn value: " + turnPercent);
-                        i = 0;
-                        break;
-                }
+                lastDrivePercent = drivePercent;
+                lastTurnPercent = turnPercent;
+                profiler.end(joystickSegment, start);
+                start = LoopProfiler.start();
                 drive.drive(drivePercent, turnPercent, kDamp);
             } catch (CANTimeoutException e) {
                 System.out.println(e);
             }
+            profiler.end(motorSegment, start);
 
+            start = LoopProfiler.start();
             boolean lowGear = driveStick.getRawButton(Parameters.kLowGearButton);
             boolean highGear = driveStick.getRawButton(Parameters.kHighGearButton);
             Tread.Gear presentGear = drive.getGear();
@@ -217,22 +314,38 @@ public class UltimateAscentBot extends SimpleRobot {
             if (presentGear != newGear) {
                 drive.setGear(newGear);
             }
+            profiler.end(gearSegment, start);
 
+            start = LoopProfiler.start();
             boolean climbPosition = driveStick.getRawButton(Parameters.kCameraClimbingButton);
             boolean shootPosition = driveStick.getRawButton(Parameters.kCameraShootingButton);
-            double currentPosition = visionSystem.getServoPosition();
             if (climbPosition) {
                 visionSystem.setClimbPosition();
-                currentPosition = Parameters.kCameraClimbPosition;
             }
             if (shootPosition) {
                 visionSystem.setShootPosition();
-                currentPosition = Parameters.kCameraShooterPosition;
             }
-            //
-            // Shooter Controls
-            //
+            profiler.end(servoSegment, start);
+            getWatchdog().feed();
+        }
+    }
+
+    /**
+     * GameMechTask
+     *
+     * This task runs the shooter controls and the GameMech.
+     */
+    class GameMechTask extends PeriodicTask {
+
+        SensorSnapshot sensors = new SensorSnapshot();
+
+        GameMechTask() {
+            super("GameMech", Parameters.GAME_MECH_TASK_PERIOD, Thread.NORM_PRIORITY + 1);
+        }
+
+        public void execute() {
             if (gameMech != null) {
+                SensorBus.getInstance().copyInto(sensors);
                 GameMech.GameMechState state = gameMech.getDesiredState();
                 try {
                     if (state == GameMech.GameMechState.kManualControl) {
@@ -260,7 +373,7 @@ public class UltimateAscentBot extends SimpleRobot {
                         currentRobotActivity = "Reloading Shooter";
                     }
                     if (state != GameMech.GameMechState.kManualControl) {
-                        gameMech.processGameMech();
+                        gameMech.processGameMech(sensors);
 
                     }
                 } catch (CANTimeoutException e) {
@@ -268,6 +381,21 @@ public class UltimateAscentBot extends SimpleRobot {
                 }
 
             }
+        }
+    }
+
+    /**
+     * ClimberTask
+     *
+     * This task runs the climbing arms.
+     */
+    class ClimberTask extends PeriodicTask {
+
+        ClimberTask() {
+            super("Climber", Parameters.CLIMBER_TASK_PERIOD, Thread.NORM_PRIORITY + 1);
+        }
+
+        public void execute() {
             if (climber != null) {
                 double leftArmValue = shooterStick.getY();
                 double rightArmValue = armStick.getY();
@@ -288,8 +416,43 @@ public class UltimateAscentBot extends SimpleRobot {
                     ex.printStackTrace();
                 }
             }
+        }
+    }
+
+    /**
+     * DashboardTask
+     *
+     * This task updates the dashboard, which nothing else waits on.
+     */
+    class DashboardTask extends PeriodicTask {
+
+        SensorSnapshot sensors = new SensorSnapshot();
+
+        DashboardTask() {
+            super("Dashboard", Parameters.DASHBOARD_TASK_PERIOD, Thread.NORM_PRIORITY - 2);
+        }
+
+        public void execute() {
+            SensorBus.getInstance().copyInto(sensors);
+            dash.updateDashboard(sensors);
+        }
+    }
+
+    /**
+     * disabled()
+     *
+     * While the robot is disabled it sits still, so this is when the gyro 
+     * tracks its drift.
+     */
+    public void disabled() {
+        while (isDisabled()) {
+            if (drive.isGyroPresent()) {
+                drive.gyro.trackDrift();
+            }
             Timer.delay(Parameters.TIMER_DELAY);
-            getWatchdog().feed();
+        }
+        if (drive.isGyroPresent()) {
+            drive.gyro.stopTrackingDrift();
         }
     }
 
@@ -304,8 +467,13 @@ public class UltimateAscentBot extends SimpleRobot {
      * aim()
      *
      * This method will align the robot with the target +/- one degree
+     *
+     * @param sensors - this run's copy of the sensor snapshot
      */
-    public boolean aim() throws NoTargetFoundException {
+    public boolean aim(SensorSnapshot sensors) throws NoTargetFoundException {
+        if (Parameters.AIM_WITH_GYRO && drive.isGyroPresent()) {
+            return aimWithGyro(sensors);
+        }
         if (turning && isAimedAtTarget()) {
             DisableAimController();
             System.out.println("Done turning");
@@ -319,6 +487,60 @@ public class UltimateAscentBot extends SimpleRobot {
         return false;
     }
 
+    /**
+     * aimWithGyro()
+     *
+     * This method aims by handing a vision fix to the gyro. The first call 
+     * turns the angle to the target into a gyro heading and has 
+     * turnController turn to it, at the gyro's rate rather than the camera's. 
+     * Once the robot has reached the heading and stopped turning, a frame 
+     * captured after it stopped is used to check the aim, and to take a new 
+     * fix if it is still off.
+     *
+     * @param sensors - this run's copy of the sensor snapshot
+     * @return true - we are aimed at the target false - we are still turning
+     */
+    boolean aimWithGyro(SensorSnapshot sensors) throws NoTargetFoundException {
+        if (!turning) {
+            aimHeading = visionSystem.getTargetHeading();
+            settledSince = 0.0;
+            EnableTurnController();
+            turnController.setSetpoint(getTurnSetpoint(aimHeading));
+            return false;
+        }
+        if (Math.abs(sensors.getGyroAngle() - aimHeading) > Parameters.CAMERA_TOLERANCE
+                || Math.abs(sensors.getGyroRate()) > Parameters.AIM_SETTLED_RATE) {
+            settledSince = 0.0;
+            return false;
+        }
+        if (settledSince == 0.0) {
+            settledSince = sensors.getTimestamp();
+        }
+        if (visionSystem.getTargetTimestamp() < settledSince) {
+            return false;
+        }
+        if (visionSystem.isAimedAtTarget()) {
+            DisableTurnController();
+            System.out.println("Done turning");
+            return true;
+        }
+        aimHeading = visionSystem.getTargetHeading();
+        settledSince = 0.0;
+        turnController.setSetpoint(getTurnSetpoint(aimHeading));
+        return false;
+    }
+
+    /**
+     * getTurnSetpoint()
+     *
+     * This method converts a heading from GyroSensor.getAngle() into a 
+     * setpoint for turnController, which reads the gyro limited to 
+     * -360.0 - 0.0 - 360.0.
+     */
+    double getTurnSetpoint(double heading) {
+        return drive.gyro.readAngle() + (heading - drive.gyro.getAngle());
+    }
+
     /**
      * setAngle()
      *
@@ -352,6 +574,21 @@ public class UltimateAscentBot extends SimpleRobot {
         return visionSystem.isAimedAtTarget();
     }
 
+    /**
+     * StopTurning()
+     *
+     * This method stops whichever controller is turning the robot.
+     */
+    public void StopTurning() {
+        if (turning) {
+            aimController.disable();
+            if (turnController != null) {
+                turnController.disable();
+            }
+        }
+        turning = false;
+    }
+
     public void DisableAimController() {
         if (turning) {
             aimController.disable();
@@ -445,6 +682,85 @@ public class UltimateAscentBot extends SimpleRobot {
         return temp;
     }
 
+    /**
+     * getDistanceConfidence()
+     *
+     * This method will return how much the distance to the target can be
+     * trusted, from 0 - 1, for display on the dashboard.
+     *
+     * @return
+     */
+    public double getDistanceConfidence() {
+        return visionSystem.getDistanceConfidence();
+    }
+
+    /**
+     * getDrivePercent()
+     *
+     * @return the last drive value the DriveTask gave the motors
+     */
+    public double getDrivePercent() {
+        return lastDrivePercent;
+    }
+
+    /**
+     * getTurnPercent()
+     *
+     * @return the last turn value the DriveTask gave the motors
+     */
+    public double getTurnPercent() {
+        return lastTurnPercent;
+    }
+
+    /**
+     * getTargetConfidence()
+     *
+     * This method will return how much the filtered target estimate can be
+     * trusted, from 0 - 1, for display on the dashboard.
+     *
+     * @return
+     */
+    public double getTargetConfidence() {
+        return visionSystem.getTargetConfidence();
+    }
+
+    /**
+     * getControlLoop()
+     *
+     * This method returns the loop timer of the autonomous loop, for its
+     * overrun and jitter counts on the dashboard. Teleop's tasks each have
+     * their own; see getTeleopTasks().
+     *
+     * @return FixedRateLoop
+     */
+    public FixedRateLoop getControlLoop() {
+        return controlLoop;
+    }
+
+    /**
+     * getTeleopTasks()
+     *
+     * This method returns the scheduler running teleop, for each task's 
+     * overrun and jitter counts on the dashboard.
+     *
+     * @return TaskScheduler
+     */
+    public TaskScheduler getTeleopTasks() {
+        return teleopTasks;
+    }
+
+    /**
+     * getScoringStatistics()
+     *
+     * This method will return the counts of particles the AimingSystem threw
+     * out at each scoring stage for display on the dashboard.
+     *
+     * @return
+     */
+    public ScoringStatistics getScoringStatistics() {
+        return visionSystem.getScoringStatistics();
+    }
+
     /**
      * getArmState()
      *
@@ -463,10 +779,11 @@ public class UltimateAscentBot extends SimpleRobot {
      * This method will return a boolean to tell whether or not a disc is in the
      * shooter for display on the dashboard.
      *
+     * @param sensors - this run's copy of the sensor snapshot
      * @return
      */
-    public boolean isShooterLoaded() {
-        return gameMech.isShooterLoaded();
+    public boolean isShooterLoaded(SensorSnapshot sensors) {
+        return gameMech.isShooterLoaded(sensors);
     }
 
     /**
@@ -5,8 +5,24 @@
 package com.phoebushighschool.phoebusrobotics.ultimateascent;
 
 import edu.wpi.first.wpilibj.AnalogModule;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
+ * Ultrasonic
+ * 
+ * This class reads the ultrasonic range finder. A sampler thread reads the 
+ * channel at a fixed rate into a ring buffer and publishes the median and 
+ * mean of the last few readings, so asking for the distance never waits on 
+ * the analog module.
+ * 
+ * The median and mean are published together under a sequence count, 
+ * which is odd while the sampler is writing them. readDistances() retries 
+ * until it reads both under the same even count, so the pair always comes 
+ * from the same readings.
+ * 
+ * The raw readings can also be read back with the time each was taken, 
+ * for the DistanceFusion, which needs independent readings rather than 
+ * overlapping medians.
  *
  * @author David
  */
@@ -14,7 +30,16 @@ public class Ultrasonic {
 
     AnalogModule ultrasonicSensor;
     int channel;
-    double distance = 0.0;
+    double[] samples = new double[Parameters.ULTRASONIC_SAMPLES];
+    double[] sampleTimes = new double[Parameters.ULTRASONIC_SAMPLES];
+    int samplesTaken = 0;
+    double[] sorted = new double[Parameters.ULTRASONIC_SAMPLES];
+    int sampleCount = 0;
+    int nextSample = 0;
+    volatile int sequence = 0;
+    volatile double medianDistance = 0.0;
+    volatile double meanDistance = 0.0;
+    Thread sampler;
     
     /**
      * Constructor that uses the default module slot
@@ -25,6 +50,111 @@ public class Ultrasonic {
     public Ultrasonic(int analogChannel) {
         channel = analogChannel;
         ultrasonicSensor = AnalogModule.getInstance(1);
+        sampler = new Thread(new Sampler());
+        sampler.start();
+    }
+
+    /**
+     * Sampler
+     * 
+     * This class is the body of the thread that reads the sensor.
+     */
+    class Sampler implements Runnable {
+
+        public void run() {
+            while (true) {
+                addSample(getDistance(), Timer.getFPGATimestamp());
+                try {
+                    Thread.sleep(Parameters.ULTRASONIC_SAMPLE_PERIOD_MS);
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * addSample()
+     * 
+     * This method puts a reading in the ring buffer and publishes the median 
+     * and mean of the readings in it. Only the sampler thread calls it.
+     */
+    void addSample(double d, double timestamp) {
+        synchronized (this) {
+            samples[nextSample] = d;
+            sampleTimes[nextSample] = timestamp;
+            nextSample = (nextSample + 1) % samples.length;
+            if (sampleCount < samples.length) {
+                sampleCount++;
+            }
+            samplesTaken++;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < sampleCount; i++) {
+            double v = samples[i];
+            sum += v;
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > v) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = v;
+        }
+        sequence++;
+        meanDistance = sum / sampleCount;
+        medianDistance = sorted[sampleCount / 2];
+        sequence++;
+    }
+
+    /**
+     * readDistances()
+     * 
+     * This method reads the median and mean of the same readings.
+     * 
+     * @param distances - at least two entries; the median is written to the 
+     * first and the mean to the second, in inches
+     */
+    public void readDistances(double[] distances) {
+        while (true) {
+            int before = sequence;
+            if ((before & 1) == 0) {
+                distances[0] = medianDistance;
+                distances[1] = meanDistance;
+                if (sequence == before) {
+                    return;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * readSamples()
+     * 
+     * This method copies the raw readings taken since an earlier call, 
+     * oldest first, with the time each was taken. Only the last 
+     * Parameters.ULTRASONIC_SAMPLES readings are kept, so a caller that 
+     * falls further behind than that misses the older ones.
+     * 
+     * @param since - what the caller's last readSamples() returned, or 0
+     * @param distances - at least Parameters.ULTRASONIC_SAMPLES entries, 
+     * filled with the readings in inches
+     * @param timestamps - as many entries, filled with the FPGA time in 
+     * seconds each reading was taken
+     * @return int - how many readings have been taken in all; the number 
+     * copied is this less since, up to Parameters.ULTRASONIC_SAMPLES
+     */
+    public synchronized int readSamples(int since, double[] distances, double[] timestamps) {
+        int count = Math.min(samplesTaken - since, sampleCount);
+        int first = nextSample - count;
+        if (first < 0) {
+            first += samples.length;
+        }
+        for (int i = 0; i < count; i++) {
+            int j = (first + i) % samples.length;
+            distances[i] = samples[j];
+            timestamps[i] = sampleTimes[j];
+        }
+        return samplesTaken;
     }
 
     /**
@@ -45,22 +175,28 @@ public class Ultrasonic {
      * 
      * Returns the averaged distance to the target.  Due to some instability in 
      * the value returned from the sensor, it is nice to smooth out the values 
-     * that are returned.
+     * that are returned. This is the median of the last 
+     * Parameters.ULTRASONIC_SAMPLES readings, which ignores the odd wild 
+     * reading, and does not touch the sensor.
      * 
      * @return double - distance to the nearest object in inches
      */
     public double getAveragedDistance() {
-        double temp = getDistance();
-        if (temp > (distance * 1.05) || temp < (distance * 0.95)) {
-            distance = temp;
-        } else {
-            distance = (distance + temp) / 2;
-        }
-        return distance;
+        return medianDistance;
+    }
+
+    /**
+     * getMeanDistance()
+     * 
+     * @return double - the mean of the last Parameters.ULTRASONIC_SAMPLES 
+     * readings in inches
+     */
+    public double getMeanDistance() {
+        return meanDistance;
     }
     
     public double pidGet() {
-        return getDistance();
+        return medianDistance;
     }
 
     public double getVoltage() {
@@ -0,0 +1,162 @@
+package com.phoebushighschool.phoebusrobotics.ultimateascent;
+
+/**
+ * VisionEngine
+ *
+ * This interface is the part of the target finding pipeline that turns a
+ * camera frame into particles: color threshold, convex hull, particle filter
+ * and particle reports. AimingSystem scores the particles it produces, so the
+ * NIVision pipeline and the pure Java pipeline can be swapped without changing
+ * how targets are picked.
+ */
+public interface VisionEngine
+{
+
+    /**
+     * setThresholdRGB()
+     *
+     * This method sets the color range a pixel must fall into to be part of
+     * a particle.
+     */
+    public void setThresholdRGB(int redLow, int redHigh, int greenLow,
+            int greenHigh, int blueLow, int blueHigh);
+
+    /**
+     * setThresholdHSV()
+     *
+     * This method sets the hue, saturation and value range a pixel must fall
+     * into to be part of a particle, in place of an RGB range. All three run
+     * from 0 - 255.
+     */
+    public void setThresholdHSV(int hueLow, int hueHigh, int saturationLow,
+            int saturationHigh, int valueLow, int valueHigh);
+
+    /**
+     * setParticleAreaRange()
+     *
+     * This method sets the range of convex hull areas, in pixels, that a
+     * particle must have to be reported.
+     */
+    public void setParticleAreaRange(int minArea, int maxArea);
+
+    /**
+     * setRegionOfInterest()
+     *
+     * This method limits the following frames to a window of the image.
+     * Particles outside the window are not found, and particles crossing its
+     * edge are cut off at the edge. An engine that cannot limit its work may
+     * ignore the window and keep processing the whole image.
+     */
+    public void setRegionOfInterest(int left, int top, int width, int height);
+
+    /**
+     * clearRegionOfInterest()
+     *
+     * This method goes back to processing the whole image.
+     */
+    public void clearRegionOfInterest();
+
+    /**
+     * setPyramidFactor()
+     *
+     * This method sets up a coarse to fine search: the frame is searched at
+     * 1/factor of its resolution first and only the candidate particles get
+     * a full resolution pass. A factor of 1 searches the full frame directly.
+     * An engine that cannot do this may ignore the factor.
+     */
+    public void setPyramidFactor(int factor);
+
+    /**
+     * processFrame()
+     *
+     * This method advances the pipeline. An engine may do the whole frame in
+     * one call or spread the work over several calls.
+     *
+     * @return true - a new set of particles is ready to be scored
+     *         false - the frame is not finished yet or no frame was available
+     */
+    public boolean processFrame();
+
+    /**
+     * isFrameAvailable()
+     *
+     * @return true if processFrame() has work to do, false if it is waiting
+     * for the camera to deliver a new frame
+     */
+    public boolean isFrameAvailable();
+
+    /**
+     * getFrameTimestamp()
+     *
+     * @return the FPGA time in seconds the frame being processed was captured
+     */
+    public double getFrameTimestamp();
+
+    /**
+     * getParticleCount()
+     *
+     * @return the number of particles found in the last processed frame
+     */
+    public int getParticleCount();
+
+    /**
+     * getParticle()
+     *
+     * @param particleNumber 0 for the largest particle, ordered by area
+     * @return the report for the particle. The report belongs to the engine
+     * and is overwritten by the next frame.
+     */
+    public ParticleReport getParticle(int particleNumber);
+
+    /**
+     * getEquivalentRectLongSide()
+     *
+     * @return the long side of the rectangle with the same perimeter and area
+     * as the particle, or 0.0 if it could not be measured
+     */
+    public double getEquivalentRectLongSide(int particleNumber);
+
+    /**
+     * getEquivalentRectShortSide()
+     *
+     * @return the short side of the rectangle with the same perimeter and
+     * area as the particle, or 0.0 if it could not be measured
+     */
+    public double getEquivalentRectShortSide(int particleNumber);
+
+    /**
+     * getColumnAverages()
+     *
+     * This method fills averages with the fraction of thresholded (pre convex
+     * hull) pixels in every column of the particle's bounding rectangle.
+     *
+     * @return the number of entries written to averages
+     */
+    public int getColumnAverages(int particleNumber, float[] averages);
+
+    /**
+     * getRowAverages()
+     *
+     * This method fills averages with the fraction of thresholded (pre convex
+     * hull) pixels in every row of the particle's bounding rectangle.
+     *
+     * @return the number of entries written to averages
+     */
+    public int getRowAverages(int particleNumber, float[] averages);
+
+    /**
+     * releaseFrame()
+     *
+     * This method lets go of everything held for the last frame once it has
+     * been scored, and restarts the pipeline from the beginning.
+     */
+    public void releaseFrame();
+
+    /**
+     * free()
+     *
+     * This method frees everything the engine holds and stops any threads
+     * it started. The engine must not be used after this.
+     */
+    public void free();
+}